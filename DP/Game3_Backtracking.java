@@ -29,9 +29,7 @@ public class Game3_Backtracking extends JFrame {
     // ── backtracking state ──────────────────────────────────
     private GameBoard   board;     // live board shown to user
     private BoardPanel3 canvas;
-    private List<Point> whiteCells;
-    private boolean[][] bulbs;
-    private int[][]     illuminated; // Count of bulbs seeing each cell
+    private List<Point> whiteCells;  // bulbs and light counts live in board
     private Map<Point, Integer> adjCount; // Map for numbered black cells
     private Stack<BacktrackState> stack;
     private int         steps;
@@ -96,8 +94,6 @@ public class Game3_Backtracking extends JFrame {
             }
         }
 
-        bulbs = new boolean[size][size];
-        illuminated = new int[size][size];
         stack = new Stack<>();
         stack.push(new BacktrackState(0, 0)); // Start at index 0, choice 0 (Try Place)
         steps = 0;
@@ -124,7 +120,7 @@ public class Game3_Backtracking extends JFrame {
             if (isCompleteSolution()) {
                 visualizationTimer.stop();
                 statusLabel.setText("Puzzle Solved! ✓");
-                System.out.println("[G3] Solved in " + steps + " steps.");
+                if (SolverLog.G3.isInfo()) SolverLog.G3.info("Solved in " + steps + " steps.");
             } else {
                 stack.pop();
             }
@@ -139,9 +135,7 @@ public class Game3_Backtracking extends JFrame {
             // --- BRANCH 1: PLACE BULB ---
             current.choice = 1; // Next time we come back to this state, try SKIP
             if (!createsConflict(c) && !overSatisfiesNumbered(c)) {
-                current.delta = applyBulb(c);
-                board.placeBulb(c.x, c.y);
-                updateDisplayIllumination();
+                current.mark = applyBulb(c);
                 canvas.repaint();
                 stack.push(new BacktrackState(index + 1, 0));
             } else {
@@ -152,11 +146,9 @@ public class Game3_Backtracking extends JFrame {
             current.choice = 2; // Both branches tried
             
             // If we placed a bulb in choice 0, undo it
-            if (current.delta != null) {
-                undoBulb(c, current.delta);
-                current.delta = null;
-                board.removeBulb(c.x, c.y);
-                updateDisplayIllumination();
+            if (current.mark >= 0) {
+                undoBulb(c, current.mark);
+                current.mark = -1;
                 canvas.repaint();
             }
 
@@ -174,32 +166,14 @@ public class Game3_Backtracking extends JFrame {
     private static class BacktrackState {
         int index;
         int choice; // 0=try place, 1=try skip, 2=exhausted
-        BulbDelta delta; // state for undoing choice 0
+        int mark = -1;   // board undo mark for choice 0, -1 if no bulb placed
         BacktrackState(int i, int c) { this.index = i; this.choice = c; }
     }
 
-    private static class BulbDelta {
-        List<Point> newlyLit;
-        List<Point> adjNumbered;
-        BulbDelta(List<Point> newlyLit, List<Point> adjNumbered) {
-            this.newlyLit = newlyLit;
-            this.adjNumbered = adjNumbered;
-        }
-    }
-
     // --- Provided Logic Functions ---
 
     private boolean createsConflict(Point c) {
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = c.x + d[0], nc = c.y + d[1];
-            while (inBounds(nr, nc)) {
-                if (grid[nr][nc] != 5) break; 
-                if (bulbs[nr][nc]) return true;
-                nr += d[0]; nc += d[1];
-            }
-        }
-        return false;
+        return board.seesBulb(c.x, c.y);
     }
 
     private boolean overSatisfiesNumbered(Point c) {
@@ -215,7 +189,7 @@ public class Game3_Backtracking extends JFrame {
     }
 
     private boolean canBeIlluminatedLater(Point c, int index) {
-        if (illuminated[c.x][c.y] > 0) return true;
+        if (board.isLit(c.x, c.y)) return true;
         // Check if any unprocessed cell in row/col can illuminate it
         int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
         for (int[] d : dirs) {
@@ -266,60 +240,35 @@ public class Game3_Backtracking extends JFrame {
         return false;
     }
 
-    private BulbDelta applyBulb(Point c) {
-        bulbs[c.x][c.y] = true;
-        List<Point> newlyLit = new ArrayList<>();
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1},{0,0}}; // 0,0 is the cell itself
-        for (int[] d : dirs) {
-            int nr = c.x + d[0], nc = c.y + d[1];
-            // If d is 0,0 just do once
-            if (d[0] == 0 && d[1] == 0) {
-                if (illuminated[c.x][c.y] == 0) newlyLit.add(new Point(c.x, c.y));
-                illuminated[c.x][c.y]++;
-                continue;
-            }
-            while (inBounds(nr, nc) && grid[nr][nc] == 5) {
-                if (illuminated[nr][nc] == 0) newlyLit.add(new Point(nr, nc));
-                illuminated[nr][nc]++;
-                nr += d[0]; nc += d[1];
-            }
-        }
-        List<Point> adjNumbered = new ArrayList<>();
+    // Light goes through the board's reference-counted engine; only the
+    // clue counters are kept here.  Returns the undo mark for undoBulb.
+    private int applyBulb(Point c) {
+        int mark = board.mark();
+        board.placeBulb(c.x, c.y);
+        bumpAdjacentNumbered(c, 1);
+        return mark;
+    }
+
+    private void undoBulb(Point c, int mark) {
+        board.undoTo(mark);
+        bumpAdjacentNumbered(c, -1);
+    }
+
+    private void bumpAdjacentNumbered(Point c, int delta) {
         int[][] dirs4 = {{-1,0},{1,0},{0,-1},{0,1}};
         for (int[] d : dirs4) {
             int nr = c.x + d[0], nc = c.y + d[1];
             if (inBounds(nr, nc) && grid[nr][nc] >= 0 && grid[nr][nc] <= 4) {
                 Point b = new Point(nr, nc);
-                adjCount.put(b, adjCount.get(b) + 1);
-                adjNumbered.add(b);
-            }
-        }
-        return new BulbDelta(newlyLit, adjNumbered);
-    }
-
-    private void undoBulb(Point c, BulbDelta delta) {
-        bulbs[c.x][c.y] = false;
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1},{0,0}};
-        for (int[] d : dirs) {
-            int nr = c.x + d[0], nc = c.y + d[1];
-            if (d[0] == 0 && d[1] == 0) {
-                illuminated[c.x][c.y]--;
-                continue;
-            }
-            while (inBounds(nr, nc) && grid[nr][nc] == 5) {
-                illuminated[nr][nc]--;
-                nr += d[0]; nc += d[1];
+                adjCount.put(b, adjCount.get(b) + delta);
             }
         }
-        for (Point b : delta.adjNumbered) {
-            adjCount.put(b, adjCount.get(b) - 1);
-        }
     }
 
     private boolean isCompleteSolution() {
+        if (!board.allEmptyLit()) return false;
         for (int r = 0; r < size; r++) {
             for (int c = 0; c < size; c++) {
-                if (grid[r][c] == 5 && illuminated[r][c] == 0) return false;
                 if (grid[r][c] >= 0 && grid[r][c] <= 4) {
                     if (adjCount.get(new Point(r, c)) != grid[r][c]) return false;
                 }
@@ -330,17 +279,6 @@ public class Game3_Backtracking extends JFrame {
 
     private boolean inBounds(int r, int c) { return r >= 0 && r < size && c >= 0 && c < size; }
 
-    private void updateDisplayIllumination() {
-        for (int r = 0; r < size; r++) {
-            for (int c = 0; c < size; c++) {
-                if (board.getCellType(r, c) == CellType.EMPTY) {
-                    board.setLit(r, c, illuminated[r][c] > 0);
-                    board.setBlocked(r, c, illuminated[r][c] > 0 && !bulbs[r][c]);
-                }
-            }
-        }
-    }
-
     private class BoardPanel3 extends JPanel {
         @Override
         protected void paintComponent(Graphics g) {
@@ -159,35 +159,11 @@ public class Game4_DynamicProgramming extends JFrame {
             }
             Point p = moveQueue.remove(0);
             board.placeBulb(p.x, p.y);
-            updateDisplayIllumination();
             canvas.repaint();
         });
         revealTimer.start();
     }
 
-    private void updateDisplayIllumination() {
-        for (int r=0; r<size; r++) {
-            for (int c=0; c<size; c++) {
-                if (board.getCellType(r, c) == CellType.EMPTY) board.setLit(r, c, false);
-            }
-        }
-        for (int r=0; r<size; r++) {
-            for (int c=0; c<size; c++) {
-                if (board.hasBulb(r, c)) {
-                    board.setLit(r, c, true);
-                    int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-                    for (int[] d : dirs) {
-                        int nr = r + d[0], nc = c + d[1];
-                        while (board.isValidCell(nr, nc) && board.getCellType(nr, nc) == CellType.EMPTY) {
-                            board.setLit(nr, nc, true);
-                            nr += d[0]; nc += d[1];
-                        }
-                    }
-                }
-            }
-        }
-    }
-
     private class BoardPanel4 extends JPanel {
         @Override
         protected void paintComponent(Graphics g) {
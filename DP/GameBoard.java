@@ -4,17 +4,18 @@ import java.util.*;
 
 class GameBoard {
     private int[][] grid;
-    private boolean[][] bulbs;
-    private boolean[][] lit;
-    private boolean[][] blocked;
+    private PuzzleTopology topo;       // shared static facts of the puzzle
+    // Bitboard, one bit per cell at index row * size + col (see Bits)
+    private long[] forbidden;  // cells ruled out by setBlocked, on top of the engine's
+    private IlluminationEngine light;  // bulbs, lit/blocked words, per-cell light counts
     private int size;
     
     public GameBoard(int[][] puzzle) {
         this.size = puzzle.length;
         this.grid = puzzle;
-        this.bulbs = new boolean[size][size];
-        this.lit = new boolean[size][size];
-        this.blocked = new boolean[size][size];
+        this.topo = PuzzleTopology.of(puzzle);
+        this.forbidden = new long[Bits.words(size * size)];
+        this.light = new IlluminationEngine(topo.segs);
     }
     
     public int getSize() { return size; }
@@ -24,9 +25,7 @@ class GameBoard {
     }
     
     public CellType getCellType(int row, int col) {
-        if (grid[row][col] == -1) return CellType.BLACK;
-        if (grid[row][col] >= 0 && grid[row][col] <= 4) return CellType.NUMBERED;
-        return CellType.EMPTY;
+        return topo.type(row * size + col);
     }
     
     public int getNumberValue(int row, int col) {
@@ -34,43 +33,95 @@ class GameBoard {
     }
     
     public boolean hasBulb(int row, int col) {
-        return bulbs[row][col];
+        return light.hasBulb(row * size + col);
     }
     
     public boolean isLit(int row, int col) {
-        return lit[row][col];
+        return light.isLit(row * size + col);
     }
     
     public boolean isBlocked(int row, int col) {
-        return blocked[row][col];
+        int i = row * size + col;
+        return light.isBlocked(i) || Bits.get(forbidden, i);
     }
     
+    /** Number of bulbs currently lighting the cell (its own bulb included). */
+    public int litCount(int row, int col) {
+        return light.litCount(row * size + col);
+    }
+    
+    // Lighting is applied incrementally along the bulb's two segments.
     public void placeBulb(int row, int col) {
-        bulbs[row][col] = true;
+        if (getCellType(row, col) != CellType.EMPTY) return;
+        light.place(row * size + col);
     }
     
     public void removeBulb(int row, int col) {
-        bulbs[row][col] = false;
+        if (getCellType(row, col) != CellType.EMPTY) return;
+        light.remove(row * size + col);
     }
     
-    public void setLit(int row, int col, boolean value) {
-        lit[row][col] = value;
+    /** Undo-log position; undoTo(mark) reverts every place/remove since. */
+    public int mark() { return light.mark(); }
+    
+    public void undoTo(int mark) { light.undoTo(mark); }
+    
+    /** O(1): does an empty cell see a bulb other than one standing on it? */
+    public boolean seesBulb(int row, int col) {
+        return light.seesBulb(row * size + col);
     }
     
+    // Marks a cell as ruled out for a bulb; light itself is owned by the engine.
     public void setBlocked(int row, int col, boolean value) {
-        blocked[row][col] = value;
+        Bits.put(forbidden, row * size + col, value);
+    }
+    
+    /** Drops every setBlocked mark, leaving only blocking by light. */
+    public void clearForbidden() {
+        java.util.Arrays.fill(forbidden, 0L);
+    }
+    
+    /** True when every EMPTY cell is lit – one AND-NOT per word. */
+    public boolean allEmptyLit() {
+        return Bits.containsAll(light.litWords(), topo.empty);
+    }
+    
+    public int countBulbs() {
+        return Bits.count(light.bulbWords());
+    }
+    
+    // Cell-index forms of the accessors above, for the solver hot paths.
+    boolean bulbAt(int i)    { return light.hasBulb(i); }
+    boolean litAt(int i)     { return light.isLit(i); }
+    boolean seesBulb(int i)  { return light.seesBulb(i); }
+    boolean blockedAt(int i) { return light.isBlocked(i) || Bits.get(forbidden, i); }
+    void forbid(int i)       { Bits.set(forbidden, i); }
+    
+    // Raw words for GridState snapshots; callers must not modify them.
+    long[] bulbWords()    { return light.bulbWords(); }
+    long[] litWords()     { return light.litWords(); }
+    long[] emptyWords()   { return topo.empty; }
+    int[][] puzzle()      { return grid; }
+    PuzzleTopology topology() { return topo; }
+    int[] cellValues()    { return topo.values; }
+    int[] neighbours()    { return topo.nbrs; }
+    SegmentIndex segments() { return topo.segs; }
+    int[] hBulbCounts()   { return light.hBulbCounts(); }
+    int[] vBulbCounts()   { return light.vBulbCounts(); }
+    
+    /** Fresh copy of the blocked words: lit by another bulb or forbidden. */
+    long[] blockedSnapshot() {
+        long[] b = light.blockedWords().clone();
+        for (int k = 0; k < b.length; k++) b[k] |= forbidden[k];
+        return b;
     }
     
     public List<Point> getAdjacentEmptyCells(int row, int col) {
         List<Point> adjacent = new ArrayList<>();
-        int[][] dirs = {{-1,0}, {1,0}, {0,-1}, {0,1}};
-        
-        for (int[] dir : dirs) {
-            int nr = row + dir[0];
-            int nc = col + dir[1];
-            if (isValidCell(nr, nc) && getCellType(nr, nc) == CellType.EMPTY) {
-                adjacent.add(new Point(nr, nc));
-            }
+        int i = row * size + col;
+        for (int k = 4 * i; k < 4 * i + 4; k++) {
+            int j = topo.nbrs[k];
+            if (j >= 0 && topo.isEmpty(j)) adjacent.add(new Point(j / size, j % size));
         }
         return adjacent;
     }
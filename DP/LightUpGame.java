@@ -31,6 +31,10 @@ public class LightUpGame extends JFrame {
         algoCombo = new JComboBox<>(ALGO_LABELS);
         algoCombo.setFont(new Font("SansSerif", Font.PLAIN, 13));
         algoCombo.setFocusable(false);
+        // also switches the game in progress, from the computer's next move
+        algoCombo.addActionListener(e -> {
+            if (panel != null) panel.setAlgorithm(selectedAlgo());
+        });
         topBar.add(algoCombo);
 
         mainPanel.add(topBar, BorderLayout.NORTH);
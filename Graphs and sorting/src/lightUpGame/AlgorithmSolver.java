@@ -3,33 +3,49 @@ package lightUpGame;
 import java.util.*;
 
 class AlgorithmSolver {
+    // GREEDY commits to the best ranked node.  COVER first runs the
+    // set-cover greedy (see SetCoverSolver) over the whole board and plays
+    // its first bulb if that placement solves the puzzle.  BEAM does the
+    // same, then looks a few bulbs ahead (see BeamSearch).  Both fall back
+    // to the greedy move when their own pass finds nothing.
+    public enum Mode { GREEDY, COVER, BEAM }
+    private Mode mode = Mode.GREEDY;
+    private int beamWidth = 8, beamBranching = 4, beamDepth = 6;
+    private long beamBudgetMillis = 250;
+
+    public void setMode(Mode m) { this.mode = m; }
+    public Mode getMode()       { return mode; }
+
+    /** Beam of width partial placements, each grown by its branching best nodes, depth bulbs deep, within budgetMillis per move. */
+    public void setBeam(int width, int branching, int depth, long budgetMillis) {
+        if (width < 1 || branching < 1 || depth < 1 || budgetMillis < 1)
+            throw new IllegalArgumentException("beam needs width, branching, depth and budget >= 1, got "
+                    + width + "/" + branching + "/" + depth + "/" + budgetMillis);
+        this.beamWidth = width;
+        this.beamBranching = branching;
+        this.beamDepth = depth;
+        this.beamBudgetMillis = budgetMillis;
+    }
+
     private GameBoard board;
     private VisibilityGraph visGraph;
     private ConstraintGraph consGraph;
-    private Map<Integer, Set<Point>> components;
+    private MoveRanking ranking;
+    private BeamSearch beam;
 
     public AlgorithmSolver(GameBoard board) {
         this.board = board;
         this.visGraph = new VisibilityGraph(board);
         this.consGraph = new ConstraintGraph(board);
-        // Components are static based on board structure (walls)
-        this.components = visGraph.findConnectedComponents();
+        // Components are static based on board structure (walls).  The
+        // ranking reads both graphs' counts, so it listens after them.
+        this.ranking = new MoveRanking(board, visGraph, consGraph);
+        this.beam = new BeamSearch(board, consGraph);
     }
 
     public boolean isValidBulbPlacement(int row, int col) {
-        // Check all numbered neighbors
-        List<Point> numberedNeighbors = consGraph.getNumberedNeighbors(row, col);
-
-        for (Point numbered : numberedNeighbors) {
-            int required = board.getNumberValue(numbered.x, numbered.y);
-            int placed = consGraph.countPlacedBulbs(numbered.x, numbered.y);
-            
-            // Would this placement exceed the requirement?
-            if (placed + 1 > required) {
-                return false;
-            }
-        }
-        return true;
+        // Would this placement exceed the requirement of any numbered neighbour?
+        return !consGraph.wouldOverfillNeighbour(row, col);
     }
 
     public void updateAfterBulbPlacement(int row, int col) {
@@ -48,8 +64,7 @@ class AlgorithmSolver {
         // In Visibility Graph, edges are H and V lines. 
         // We traverse outwards.
         
-        int[][] dirs = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-        for (int[] dir : dirs) {
+        for (int[] dir : ConstraintGraph.DIRS) {
             int r = startRow + dir[0];
             int c = startCol + dir[1];
             while (board.isValidCell(r, c) && board.getCellType(r, c) != CellType.BLACK && board.getCellType(r, c) != CellType.NUMBERED) {
@@ -75,125 +90,45 @@ class AlgorithmSolver {
         // "Initialize a queue Q with all numbered nodes... while Q not empty"
         // Since we only want ONE move, we find the first trigger.
         
-        for (int row = 0; row < board.getSize(); row++) {
-            for (int col = 0; col < board.getSize(); col++) {
-                if (board.getCellType(row, col) == CellType.NUMBERED) {
-                    int required = board.getNumberValue(row, col);
-                    int placed = consGraph.countPlacedBulbs(row, col);
-                    int free = consGraph.countFreeAdjacent(row, col);
-
-                    // Logic: if remaining(x) == free(x)
-                    // remaining = required - placed
-                    if (required - placed > 0 && (required - placed) == free) {
-                        // All free adjacent nodes MUST have bulbs.
-                        // Find the first one that doesn't have a bulb yet.
-                        List<Point> adjacent = board.getAdjacentEmptyCells(row, col);
-                        for (Point p : adjacent) {
-                            if (!board.hasBulb(p.x, p.y) && !board.isBlocked(p.x, p.y)) {
-                                return p; // Executing specific forced move
-                            }
-                        }
-                    }
+        // Only tight clues can force a move; they come in row-major order.
+        BitSet tight = consGraph.tightClues();
+        int size = board.getSize();
+        for (int i = tight.nextSetBit(0); i >= 0; i = tight.nextSetBit(i + 1)) {
+            int row = i / size, col = i % size;
+            int remaining = consGraph.remaining(row, col);
+            int free = consGraph.countFreeAdjacent(row, col);
+
+            // Logic: if remaining(x) == free(x)
+            if (remaining > 0 && remaining == free) {
+                // All free adjacent nodes MUST have bulbs.
+                // Find the first one that doesn't have a bulb yet.
+                Point p = consGraph.firstFreeAdjacent(row, col);
+                if (p != null) {
+                    return p; // Executing specific forced move
                 }
             }
         }
 
-        // Step 2: Sort Visibility Components
-        // Score(C) = |C| - number of lit nodes in C
-        List<ComponentScore> componentScores = new ArrayList<>();
-        
-        for (Map.Entry<Integer, Set<Point>> entry : components.entrySet()) {
-            Set<Point> component = entry.getValue();
-            int litCount = 0;
-            for (Point p : component) {
-                if (board.isLit(p.x, p.y)) {
-                    litCount++;
-                }
-            }
-            int score = component.size() - litCount;
-            
-            // "Sort all components by descending score... -> largest unlit region first"
-            // Only consider components that have unlit nodes?
-            // "Step 3: For each component C in sorted order: if C has unlit nodes..."
-            if (score > 0) {
-                componentScores.add(new ComponentScore(entry.getKey(), component, score));
-            }
+        // Warm start: a set-cover pass costs linear time, and when its
+        // placement solves the board the search has nothing to add.
+        if (mode != Mode.GREEDY) {
+            SetCoverSolver cover = new SetCoverSolver(board);
+            List<Point> plan = cover.solve();
+            if (!plan.isEmpty() && cover.isComplete()) return plan.get(0);
         }
-        
-        if (componentScores.isEmpty()) return null; // No unlit components?
-        
-        insertionSort(componentScores);
 
-        // Step 3: Greedy Bulb Placement per Component
-        for (ComponentScore cs : componentScores) {
-            // "if C has unlit nodes" (handled by score > 0 check above)
-            
-            List<NodeScore> nodeScores = new ArrayList<>();
-            
-            for (Point u : cs.component) {
-                // "choose node u ... such that u is not blocked"
-                if (!board.isBlocked(u.x, u.y) && !board.hasBulb(u.x, u.y)) {
-                    // Check if placement violates Gc
-                    if (isValidBulbPlacement(u.x, u.y)) {
-                        // score(u) = number of its outgoing edges in Gv
-                        int score = visGraph.countOutgoingEdges(u.x, u.y);
-                        nodeScores.add(new NodeScore(u, score));
-                    }
-                }
-            }
-            
-            if (nodeScores.isEmpty()) continue; 
-            
-            // "Sort all nodes in descending order according to their scores using MERGE SORT"
-            mergeSort(nodeScores, 0, nodeScores.size() - 1);
-            
-            // "choose node u ... such that ... u maximizes number of newly lit nodes"
-            // We iterate through our candidates and pick the one that maximizes newly lit.
-            // The constraint "Sort ... choose u" might imply picking from top, or just
-            // that the algorithm structure requires sorting first. 
-            // We will check ALL candidates to find the true MAX, fulfilling "maximizes".
-            // The sort might be for tie-breaking or heuristic ordering.
-            
-            NodeScore bestNode = null;
-            int maxNewlyLit = -1;
-            
-            for (NodeScore ns : nodeScores) {
-                int newlyLit = calculateNewlyLit(ns.point);
-                if (newlyLit > maxNewlyLit) {
-                    maxNewlyLit = newlyLit;
-                    bestNode = ns;
-                }
-            }
-            
-            if (bestNode != null) {
-                return bestNode.point;
-            }
+        if (mode == Mode.BEAM) {
+            Point p = beam.search(beamWidth, beamBranching, beamDepth, beamBudgetMillis);
+            if (p != null) return p;
         }
 
-        return null;
+        // Steps 2 & 3: largest unlit component first; in it the node that
+        // newly lights the most cells, ties to the higher out-degree in Gv.
+        // Both rankings are kept up to date as cells are lit, so nothing
+        // is rebuilt or sorted here.
+        return ranking.best();
     }
 
-    private int calculateNewlyLit(Point p) {
-        int count = 0;
-        int[][] dirs = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-        
-        // Count p itself
-        if (!board.isLit(p.x, p.y)) count++;
-        
-        for (int[] dir : dirs) {
-            int r = p.x + dir[0];
-            int c = p.y + dir[1];
-            while (board.isValidCell(r, c) && board.getCellType(r, c) != CellType.BLACK && board.getCellType(r, c) != CellType.NUMBERED) {
-                if (!board.isLit(r, c)) {
-                    count++;
-                }
-                r += dir[0];
-                c += dir[1];
-            }
-        }
-        return count;
-    }
-    
     // Step 5: Termination - isGameComplete handled in GamePanel or here?
     public boolean isGameComplete() {
          for (int row = 0; row < board.getSize(); row++) {
@@ -215,47 +150,4 @@ class AlgorithmSolver {
         }
         return true;
     }
-
-    // --- Sorting Implementations ---
-
-    private void insertionSort(List<ComponentScore> list) {
-        for (int i = 1; i < list.size(); i++) {
-            ComponentScore key = list.get(i);
-            int j = i - 1;
-            while (j >= 0 && list.get(j).score < key.score) { // Descending
-                list.set(j + 1, list.get(j));
-                j--;
-            }
-            list.set(j + 1, key);
-        }
-    }
-
-    private void mergeSort(List<NodeScore> list, int left, int right) {
-        if (left < right) {
-            int mid = (left + right) / 2;
-            mergeSort(list, left, mid);
-            mergeSort(list, mid + 1, right);
-            merge(list, left, mid, right);
-        }
-    }
-
-    private void merge(List<NodeScore> list, int left, int mid, int right) {
-        List<NodeScore> temp = new ArrayList<>();
-        int i = left, j = mid + 1;
-        
-        while (i <= mid && j <= right) {
-            if (list.get(i).score >= list.get(j).score) { // Descending
-                temp.add(list.get(i++));
-            } else {
-                temp.add(list.get(j++));
-            }
-        }
-        
-        while (i <= mid) temp.add(list.get(i++));
-        while (j <= right) temp.add(list.get(j++));
-        
-        for (int k = 0; k < temp.size(); k++) {
-            list.set(left + k, temp.get(k));
-        }
-    }
 }
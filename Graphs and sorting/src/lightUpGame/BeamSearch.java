@@ -0,0 +1,222 @@
+package lightUpGame;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+
+// Lookahead for the greedy move: a beam of partial placements grown one
+// bulb per level.  Each node is expanded with its K best cells under the
+// greedy's own ranking (most newly lit, then out-degree, then row-major),
+// or with its forced cell if a clue needs every free neighbour.  The
+// nodes of a level are expanded in parallel on the common fork-join
+// pool, and the B best children by score (lit cells + 10 per met clue)
+// form the next level.
+//
+// Children are built incrementally: a copy of the parent's counters plus
+// the cells around the new bulb.  A child is dropped as soon as it is
+// dead -- a clue that can no longer get its bulbs, or a dark cell that
+// nothing can light any more -- which per-segment counts of placeable
+// cells show without a board scan.  The search ends at the depth limit,
+// at a node that solves the puzzle, or when the time budget runs out,
+// and answers the first bulb of the best node of the last full level.
+// Children are ranked in a fixed order, so the answer does not depend on
+// the number of threads, only on the budget if it cuts a level short.
+class BeamSearch {
+    private GameBoard board;
+    private PuzzleTopology topo;
+    private SegmentIndex segs;
+    private ConstraintGraph consGraph;
+    private int empties, clues;
+
+    BeamSearch(GameBoard board, ConstraintGraph consGraph) {
+        this.board = board;
+        this.topo = board.topology();
+        this.segs = topo.segs;
+        this.consGraph = consGraph;
+        for (int i = 0; i < topo.n; i++) {
+            if (topo.isEmpty(i)) empties++;
+            if (topo.isNumbered(i)) clues++;
+        }
+    }
+
+    /** First bulb of the best line found, or null if every line dies at the first level. */
+    Point search(int width, int branching, int depth, long budgetMillis) {
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        List<Node> beam = Collections.singletonList(new Node());
+        Node best = null;
+        for (int d = 0; d < depth; d++) {
+            List<ForkJoinTask<List<Node>>> tasks = new ArrayList<>(beam.size());
+            for (Node n : beam) tasks.add(ForkJoinTask.adapt(() -> n.expand(branching, deadline)));
+            ForkJoinTask.invokeAll(tasks);
+            if (System.nanoTime() > deadline) break;          // level cut short: keep the last full one
+
+            List<Node> next = new ArrayList<>();
+            Set<BitSet> seen = new HashSet<>();               // the same bulbs reached in another order
+            for (ForkJoinTask<List<Node>> t : tasks)
+                for (Node c : t.join()) {
+                    if (c.solved()) return toPoint(c.first);
+                    if (seen.add(c.bulbs)) next.add(c);
+                }
+            if (next.isEmpty()) break;
+            next.sort((x, y) -> Integer.compare(y.score(), x.score()));   // stable: ties keep rank order
+            beam = next.subList(0, Math.min(width, next.size()));
+            best = beam.get(0);
+        }
+        return best == null ? null : toPoint(best.first);
+    }
+
+    private Point toPoint(int i) {
+        return new Point(i / topo.size, i % topo.size);
+    }
+
+    private final class Node {
+        final BitSet bulbs;
+        final boolean[] lit;
+        final boolean[] open;            // a bulb could still go here
+        final int[] placed;              // bulbs next to each clue
+        final int[] hUnlit, vUnlit;      // dark cells per segment
+        final int[] hOpen, vOpen;        // open cells per segment
+        int litCount, met, first = -1;
+
+        // Root: the live board
+        Node() {
+            int size = topo.size;
+            bulbs = new BitSet(topo.n);
+            lit = new boolean[topo.n];
+            open = new boolean[topo.n];
+            placed = new int[topo.n];
+            hUnlit = new int[segs.hCount]; vUnlit = new int[segs.vCount];
+            hOpen = new int[segs.hCount];  vOpen = new int[segs.vCount];
+            for (int i = 0; i < topo.n; i++) {
+                int r = i / size, c = i % size;
+                if (topo.isNumbered(i)) {
+                    placed[i] = consGraph.countPlacedBulbs(r, c);
+                    if (placed[i] == topo.values[i]) met++;
+                }
+                if (!topo.isEmpty(i)) continue;
+                if (board.hasBulb(r, c)) bulbs.set(i);
+                lit[i] = board.isLit(r, c);
+                if (lit[i]) litCount++;
+                else { hUnlit[segs.hSeg[i]]++; vUnlit[segs.vSeg[i]]++; }
+                open[i] = !board.hasBulb(r, c) && !board.isBlocked(r, c) && !consGraph.wouldOverfillNeighbour(r, c);
+                if (open[i]) { hOpen[segs.hSeg[i]]++; vOpen[segs.vSeg[i]]++; }
+            }
+        }
+
+        Node(Node p) {
+            bulbs = (BitSet) p.bulbs.clone();
+            lit = p.lit.clone();
+            open = p.open.clone();
+            placed = p.placed.clone();
+            hUnlit = p.hUnlit.clone(); vUnlit = p.vUnlit.clone();
+            hOpen = p.hOpen.clone();   vOpen = p.vOpen.clone();
+            litCount = p.litCount;
+            met = p.met;
+            first = p.first;
+        }
+
+        int score()      { return litCount + 10 * met; }
+        boolean solved() { return litCount == empties && met == clues; }
+
+        List<Node> expand(int branching, long deadline) {
+            List<Node> kids = new ArrayList<>();
+            int forced = forcedCell();
+            for (int i : forced >= 0 ? new int[]{forced} : ranked(branching)) {
+                if (System.nanoTime() > deadline) break;
+                Node c = child(i);
+                if (c != null) kids.add(c);
+            }
+            return kids;
+        }
+
+        // Step 1 of the greedy: a clue whose open neighbours are exactly the bulbs it still needs
+        private int forcedCell() {
+            for (int j = 0; j < topo.n; j++) {
+                if (!topo.isNumbered(j)) continue;
+                int need = topo.values[j] - placed[j];
+                if (need > 0 && need == openAround(j))
+                    for (int s = 4 * j; s < 4 * j + 4; s++) { int e = topo.nbrs[s]; if (e >= 0 && open[e]) return e; }
+            }
+            return -1;
+        }
+
+        /** The k best open cells, best first. */
+        private int[] ranked(int k) {
+            long[] top = new long[k];
+            int n = 0;
+            for (int i = 0; i < topo.n; i++) {
+                if (!open[i]) continue;
+                long key = (long) (hUnlit[segs.hSeg[i]] + vUnlit[segs.vSeg[i]] - (lit[i] ? 0 : 1)) << 42
+                         | (long) segs.visibleCount(i) << 21 | (0x1FFFFF - i);
+                if (n == k && key <= top[k - 1]) continue;
+                int s = n < k ? n++ : k - 1;
+                while (s > 0 && top[s - 1] < key) { top[s] = top[s - 1]; s--; }
+                top[s] = key;
+            }
+            int[] cells = new int[n];
+            for (int s = 0; s < n; s++) cells[s] = 0x1FFFFF - (int) (top[s] & 0x1FFFFF);
+            return cells;
+        }
+
+        /** This node plus a bulb on open cell b, or null if that leaves the puzzle unsolvable. */
+        private Node child(int b) {
+            Node c = new Node(this);
+            if (c.first < 0) c.first = b;
+            c.bulbs.set(b);
+            int[] closed = new int[segs.lightCount(b) + 16];   // its lit cells, plus up to 4 clues x 4 neighbours
+            int n = 0;
+            int h = segs.hSeg[b], v = segs.vSeg[b];
+            for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) n = c.light(segs.hCells[k], closed, n);
+            for (int k = segs.vStart[v]; k < segs.vStart[v + 1]; k++) if (segs.vCells[k] != b) n = c.light(segs.vCells[k], closed, n);
+            for (int k = topo.clueStart[b]; k < topo.clueStart[b + 1]; k++) {
+                int j = topo.clueCells[k];
+                if (++c.placed[j] < topo.values[j]) continue;
+                c.met++;                                       // now full: its other neighbours are out
+                for (int s = 4 * j; s < 4 * j + 4; s++) {
+                    int e = topo.nbrs[s];
+                    if (e >= 0 && c.open[e]) closed[n++] = c.close(e);
+                }
+            }
+            for (int k = 0; k < n; k++) if (c.strands(closed[k])) return null;
+            return c;
+        }
+
+        private int light(int x, int[] closed, int n) {
+            if (!lit[x]) {
+                lit[x] = true;
+                litCount++;
+                hUnlit[segs.hSeg[x]]--; vUnlit[segs.vSeg[x]]--;
+            }
+            if (open[x]) closed[n++] = close(x);
+            return n;
+        }
+
+        private int close(int e) {
+            open[e] = false;
+            hOpen[segs.hSeg[e]]--; vOpen[segs.vSeg[e]]--;
+            return e;
+        }
+
+        // Did closing e leave a dark cell that sees it, or a clue beside it, without a way out?
+        private boolean strands(int e) {
+            int h = segs.hSeg[e], v = segs.vSeg[e];
+            for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) if (dark(segs.hCells[k])) return true;
+            for (int k = segs.vStart[v]; k < segs.vStart[v + 1]; k++) if (dark(segs.vCells[k])) return true;
+            for (int k = topo.clueStart[e]; k < topo.clueStart[e + 1]; k++) {
+                int j = topo.clueCells[k];
+                if (topo.values[j] - placed[j] > openAround(j)) return true;
+            }
+            return false;
+        }
+
+        /** Unlit with no open cell left on either of its segments. */
+        private boolean dark(int u) {
+            return !lit[u] && hOpen[segs.hSeg[u]] + vOpen[segs.vSeg[u]] - (open[u] ? 1 : 0) == 0;
+        }
+
+        private int openAround(int j) {
+            int cnt = 0;
+            for (int s = 4 * j; s < 4 * j + 4; s++) { int e = topo.nbrs[s]; if (e >= 0 && open[e]) cnt++; }
+            return cnt;
+        }
+    }
+}
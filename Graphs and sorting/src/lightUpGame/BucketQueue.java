@@ -0,0 +1,56 @@
+package lightUpGame;
+
+import java.util.Arrays;
+
+// Max priority queue over the ids 0 .. n-1 with small integer keys
+// 0 .. maxKey: one doubly linked list per key value.  Inserting,
+// removing and re-keying an id are O(1).  peekMax walks down from the
+// last known top, which only rises on an insert, so a run of decrements
+// costs O(maxKey) in total on top of the updates themselves.
+class BucketQueue {
+    private final int[] head;          // first id of each key, -1 if none
+    private final int[] next, prev;    // list links, -1 at the ends
+    private final int[] key;           // -1 when absent
+    private int top = -1, size;
+
+    BucketQueue(int n, int maxKey) {
+        head = new int[maxKey + 1];
+        next = new int[n];
+        prev = new int[n];
+        key = new int[n];
+        Arrays.fill(head, -1);
+        Arrays.fill(key, -1);
+    }
+
+    int size()               { return size; }
+    boolean isEmpty()        { return size == 0; }
+    boolean contains(int id) { return key[id] >= 0; }
+    int key(int id)          { return key[id]; }
+
+    /** Inserts id with key k, or moves it to k if already present. */
+    void set(int id, int k) {
+        remove(id);
+        key[id] = k;
+        prev[id] = -1;
+        next[id] = head[k];
+        if (head[k] >= 0) prev[head[k]] = id;
+        head[k] = id;
+        size++;
+        if (k > top) top = k;
+    }
+
+    void remove(int id) {
+        int k = key[id];
+        if (k < 0) return;
+        if (prev[id] >= 0) next[prev[id]] = next[id]; else head[k] = next[id];
+        if (next[id] >= 0) prev[next[id]] = prev[id];
+        key[id] = -1;
+        size--;
+    }
+
+    /** An id with the largest key; the queue must not be empty. */
+    int peekMax() {
+        while (head[top] < 0) top--;
+        return head[top];
+    }
+}
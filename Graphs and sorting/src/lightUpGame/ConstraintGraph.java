@@ -2,51 +2,120 @@ package lightUpGame;
 
 import java.util.*;
 
-class ConstraintGraph {
+// Per-clue counters kept in step with the board through GameBoard.Listener:
+// placed = bulbs next to the numbered cell, free = empty neighbours that are
+// neither bulbs nor blocked, remaining = value - placed.  A clue is "tight"
+// when remaining == 0 or remaining == free – exactly the clues forced-move
+// detection has to look at.
+class ConstraintGraph implements GameBoard.Listener {
     private GameBoard board;
+    private PuzzleTopology topo;
+    private int[] placed, free;     // indexed by cell, meaningful on numbered cells
+    private BitSet tight = new BitSet();
     
     public ConstraintGraph(GameBoard board) {
         this.board = board;
+        this.topo = board.topology();
+        this.placed = new int[topo.n];
+        this.free = new int[topo.n];
+        updateConstraints();
+        board.addListener(this);
     }
     
-    public List<Point> getNumberedNeighbors(int row, int col) {
-        List<Point> neighbors = new ArrayList<>();
-        int[][] dirs = {{-1,0}, {1,0}, {0,-1}, {0,1}};
-        
-        for (int[] dir : dirs) {
-            int nr = row + dir[0];
-            int nc = col + dir[1];
-            if (board.isValidCell(nr, nc) && board.getCellType(nr, nc) == CellType.NUMBERED) {
-                neighbors.add(new Point(nr, nc));
+    // Shared 4-neighbour offsets: up, down, left, right.
+    static final int[][] DIRS = {{-1,0}, {1,0}, {0,-1}, {0,1}};
+    
+    /** True if one more bulb next to (row, col) would exceed a numbered neighbour. */
+    public boolean wouldOverfillNeighbour(int row, int col) {
+        int size = topo.size, i = row * size + col;
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int j = topo.clueCells[k];
+            if (countPlacedBulbs(j / size, j % size) + 1 > topo.values[j]) {
+                return true;
             }
         }
-        return neighbors;
+        return false;
     }
     
+    // O(1) reads of the maintained counters.
     public int countPlacedBulbs(int row, int col) {
-        int count = 0;
-        List<Point> adjacent = board.getAdjacentEmptyCells(row, col);
-        for (Point p : adjacent) {
-            if (board.hasBulb(p.x, p.y)) {
-                count++;
-            }
-        }
-        return count;
+        return placed[row * topo.size + col];
     }
     
     public int countFreeAdjacent(int row, int col) {
-        int count = 0;
-        List<Point> adjacent = board.getAdjacentEmptyCells(row, col);
-        for (Point p : adjacent) {
-            if (!board.isBlocked(p.x, p.y) && !board.hasBulb(p.x, p.y)) {
-                count++;
+        return free[row * topo.size + col];
+    }
+    
+    public int remaining(int row, int col) {
+        int i = row * topo.size + col;
+        return topo.values[i] - placed[i];
+    }
+    
+    /** Numbered cells (as r * size + c) with remaining == 0 or remaining == free. */
+    BitSet tightClues() {
+        return tight;
+    }
+    
+    /** First free empty neighbour in DIRS order, or null. */
+    public Point firstFreeAdjacent(int row, int col) {
+        for (int[] dir : DIRS) {
+            int nr = row + dir[0];
+            int nc = col + dir[1];
+            if (isEmptyCell(nr, nc) && !board.hasBulb(nr, nc) && !board.isBlocked(nr, nc)) {
+                return new Point(nr, nc);
             }
         }
-        return count;
+        return null;
     }
     
+    private boolean isEmptyCell(int row, int col) {
+        return board.isValidCell(row, col) && board.getCellType(row, col) == CellType.EMPTY;
+    }
+    
+    @Override
+    public void bulbPlaced(int row, int col) {
+        int i = row * topo.size + col;
+        if (!topo.isEmpty(i)) return;
+        // a bulb cell is never free; it was free only if unblocked
+        bump(i, 1, board.isBlocked(row, col) ? 0 : -1);
+    }
+    
+    @Override
+    public void blockedChanged(int row, int col, boolean blocked) {
+        int i = row * topo.size + col;
+        if (!topo.isEmpty(i) || board.hasBulb(row, col)) return;
+        bump(i, 0, blocked ? -1 : 1);
+    }
+    
+    private void bump(int i, int dPlaced, int dFree) {
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int j = topo.clueCells[k];
+            placed[j] += dPlaced;
+            free[j] += dFree;
+            retighten(j);
+        }
+    }
+    
+    private void retighten(int j) {
+        int rem = topo.values[j] - placed[j];
+        tight.set(j, rem == 0 || rem == free[j]);
+    }
+    
+    /** Recounts every clue from the board; listener updates keep it current afterwards. */
     public void updateConstraints() {
-        // This method can be used to maintain constraint state if needed
-        // Currently handled inline in the solver
+        int size = topo.size;
+        for (int j = 0; j < topo.n; j++) {
+            if (!topo.isNumbered(j)) continue;
+            int p = 0, f = 0;
+            for (int q = 4 * j; q < 4 * j + 4; q++) {
+                int e = topo.nbrs[q];
+                if (e < 0 || !topo.isEmpty(e)) continue;
+                if (board.hasBulb(e / size, e % size)) p++;
+                else if (!board.isBlocked(e / size, e % size)) f++;
+            }
+            placed[j] = p;
+            free[j] = f;
+            retighten(j);
+        }
     }
-}
\ No newline at end of file
+}
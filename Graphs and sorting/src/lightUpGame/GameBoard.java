@@ -4,14 +4,28 @@ import java.util.*;
 
 class GameBoard {
     private int[][] grid;
+    private PuzzleTopology topo;   // shared static facts of the puzzle
     private boolean[][] bulbs;
     private boolean[][] lit;
     private boolean[][] blocked;
     private int size;
+    private List<Listener> listeners = new ArrayList<>();
+    
+    /** Told about every bulb placed (none is ever removed) and every actual change of a blocked or lit flag. */
+    interface Listener {
+        void bulbPlaced(int row, int col);
+        void blockedChanged(int row, int col, boolean blocked);
+        default void litChanged(int row, int col, boolean lit) {}
+    }
+    
+    void addListener(Listener l) {
+        listeners.add(l);
+    }
     
     public GameBoard(int[][] puzzle) {
         this.size = puzzle.length;
         this.grid = puzzle;
+        this.topo = PuzzleTopology.of(puzzle);
         this.bulbs = new boolean[size][size];
         this.lit = new boolean[size][size];
         this.blocked = new boolean[size][size];
@@ -24,9 +38,7 @@ class GameBoard {
     }
     
     public CellType getCellType(int row, int col) {
-        if (grid[row][col] == -1) return CellType.BLACK;
-        if (grid[row][col] >= 0 && grid[row][col] <= 4) return CellType.NUMBERED;
-        return CellType.EMPTY;
+        return topo.type(row * size + col);
     }
     
     public int getNumberValue(int row, int col) {
@@ -46,28 +58,28 @@ class GameBoard {
     }
     
     public void placeBulb(int row, int col) {
+        if (bulbs[row][col]) return;
         bulbs[row][col] = true;
+        for (Listener l : listeners) l.bulbPlaced(row, col);
     }
     
     public void setLit(int row, int col, boolean value) {
+        if (lit[row][col] == value) return;
         lit[row][col] = value;
+        for (Listener l : listeners) l.litChanged(row, col, value);
     }
     
     public void setBlocked(int row, int col, boolean value) {
+        if (blocked[row][col] == value) return;
         blocked[row][col] = value;
+        for (Listener l : listeners) l.blockedChanged(row, col, value);
+    }
+    
+    int[][] puzzle() {
+        return grid;
     }
     
-    public List<Point> getAdjacentEmptyCells(int row, int col) {
-        List<Point> adjacent = new ArrayList<>();
-        int[][] dirs = {{-1,0}, {1,0}, {0,-1}, {0,1}};
-        
-        for (int[] dir : dirs) {
-            int nr = row + dir[0];
-            int nc = col + dir[1];
-            if (isValidCell(nr, nc) && getCellType(nr, nc) == CellType.EMPTY) {
-                adjacent.add(new Point(nr, nc));
-            }
-        }
-        return adjacent;
+    PuzzleTopology topology() {
+        return topo;
     }
 }
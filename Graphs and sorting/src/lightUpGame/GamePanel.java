@@ -9,9 +9,10 @@ class GamePanel extends JPanel {
     private GameBoard board;
     private AlgorithmSolver solver;
     
-    public GamePanel(GameBoard board) {
+    public GamePanel(GameBoard board, AlgorithmSolver.Mode mode) {
         this.board = board;
         this.solver = new AlgorithmSolver(board);
+        this.solver.setMode(mode);
         
         int size = board.getSize();
         setPreferredSize(new Dimension(size * CELL_SIZE, size * CELL_SIZE));
@@ -26,6 +27,11 @@ class GamePanel extends JPanel {
         });
     }
     
+    public void setSolverMode(AlgorithmSolver.Mode mode) {
+        solver.setMode(mode);
+        System.out.println("Computer strategy: " + mode);
+    }
+    
     private void handlePlayerMove(int row, int col) {
         if (!board.isValidCell(row, col)) {
             System.out.println("ERROR: Invalid cell selection!");
@@ -0,0 +1,89 @@
+package lightUpGame;
+
+import java.util.Arrays;
+
+// Binary max-heap over the ids 0 .. capacity-1, each present at most once
+// with a long key.  pos[] maps an id to its heap slot, so a key can be
+// changed or an id removed in O(log n) instead of rebuilding the heap.
+class IndexedMaxHeap {
+    private final int[] heap;     // heap[0 .. size) are ids
+    private final int[] pos;      // slot of each id, -1 when absent
+    private final long[] key;
+    private int size;
+
+    IndexedMaxHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        key = new long[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    int size()               { return size; }
+    boolean isEmpty()        { return size == 0; }
+    boolean contains(int id) { return pos[id] >= 0; }
+    long key(int id)         { return key[id]; }
+
+    /** Id with the largest key; the heap must not be empty. */
+    int peek() { return heap[0]; }
+
+    /** Inserts id, or moves it to its new key if already present. */
+    void set(int id, long k) {
+        if (pos[id] < 0) {
+            heap[size] = id;
+            pos[id] = size++;
+            key[id] = k;
+            up(pos[id]);
+        } else {
+            long old = key[id];
+            key[id] = k;
+            if (k > old) up(pos[id]); else down(pos[id]);
+        }
+    }
+
+    void remove(int id) {
+        int s = pos[id];
+        if (s < 0) return;
+        int last = heap[--size];
+        pos[id] = -1;
+        if (s == size) return;
+        heap[s] = last;
+        pos[last] = s;
+        up(s);
+        down(pos[last]);
+    }
+
+    int poll() {
+        int id = heap[0];
+        remove(id);
+        return id;
+    }
+
+    private void up(int s) {
+        int id = heap[s];
+        while (s > 0) {
+            int p = (s - 1) >>> 1;
+            if (key[heap[p]] >= key[id]) break;
+            move(heap[p], s);
+            s = p;
+        }
+        move(id, s);
+    }
+
+    private void down(int s) {
+        int id = heap[s];
+        while (true) {
+            int c = 2 * s + 1;
+            if (c >= size) break;
+            if (c + 1 < size && key[heap[c + 1]] > key[heap[c]]) c++;
+            if (key[heap[c]] <= key[id]) break;
+            move(heap[c], s);
+            s = c;
+        }
+        move(id, s);
+    }
+
+    private void move(int id, int s) {
+        heap[s] = id;
+        pos[id] = s;
+    }
+}
@@ -8,6 +8,14 @@ public class LightUpGame extends JFrame {
     private GameBoard board;
     private GamePanel panel;
     private JPanel mainPanel;
+    private JComboBox<String> modeCombo;
+    
+    // Labels in AlgorithmSolver.Mode order
+    private static final String[] MODE_LABELS = {
+        "Greedy",
+        "Set cover",
+        "Beam search"
+    };
     
     public LightUpGame() {
         setTitle("Light Up Akari - Turn Based");
@@ -15,6 +23,13 @@ public class LightUpGame extends JFrame {
         
         mainPanel = new JPanel(new BorderLayout());
         
+        // Computer strategy, applied to the game in progress as well
+        modeCombo = new JComboBox<>(MODE_LABELS);
+        modeCombo.setFocusable(false);
+        modeCombo.addActionListener(e -> {
+            if (panel != null) panel.setSolverMode(selectedMode());
+        });
+        
         // Load a random puzzle
         loadNewGame();
         
@@ -23,6 +38,8 @@ public class LightUpGame extends JFrame {
         newGameButton.addActionListener(e -> loadNewGame());
         
         JPanel buttonPanel = new JPanel();
+        buttonPanel.add(new JLabel("Computer:"));
+        buttonPanel.add(modeCombo);
         buttonPanel.add(newGameButton);
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
         
@@ -39,7 +56,7 @@ public class LightUpGame extends JFrame {
         
         // Load random puzzle from database
         board = new GameBoard(PuzzleDatabase.getRandomPuzzle());
-        panel = new GamePanel(board);
+        panel = new GamePanel(board, selectedMode());
         
         mainPanel.add(panel, BorderLayout.CENTER);
         
@@ -48,7 +65,11 @@ public class LightUpGame extends JFrame {
         revalidate();
         repaint();
         
-        System.out.println("\n=== NEW GAME STARTED ===");
+        System.out.println("\n=== NEW GAME STARTED [" + selectedMode() + "] ===");
         System.out.println("Grid Size: " + board.getSize() + "x" + board.getSize());
     }
+    
+    private AlgorithmSolver.Mode selectedMode() {
+        return AlgorithmSolver.Mode.values()[modeCombo.getSelectedIndex()];
+    }
 }
@@ -0,0 +1,149 @@
+package lightUpGame;
+
+// Steps 2 and 3 of the greedy move, kept ranked between moves.
+// Components sit in one indexed max-heap keyed by their unlit count, and
+// each component keeps its candidate nodes in a heap of its own, keyed by
+// the cells a bulb there would newly light, then by its visibility-graph
+// out-degree, then row-major order.  A node is a candidate while it is
+// not blocked, holds no bulb and would not overfill a clue.
+//
+// Newly lit is read off per-segment unlit counts in O(1).  Node keys are
+// refreshed lazily, as in CELF greedy: lighting a cell only ever lowers
+// the gain of the nodes that see it, so a cached key is an upper bound
+// and nothing is re-keyed when the cell is lit.  best() re-evaluates the
+// top node alone until its fresh key still matches, at which point no
+// other node can beat it; the choice is the one eager keys would give.
+// Eligibility is kept eagerly: a bulb re-checks the neighbours of the
+// clues beside it.  Registered after the visibility and constraint
+// graphs, whose counts it reads, so they are already current when it is
+// told of a change.
+class MoveRanking implements GameBoard.Listener {
+    private GameBoard board;
+    private PuzzleTopology topo;
+    private SegmentIndex segs;
+    private VisibilityGraph visGraph;
+    private ConstraintGraph consGraph;
+    private int[] hUnlit, vUnlit;        // per segment
+    private int[] slot;                  // cell -> its index in the component's node heap
+    private IndexedMaxHeap components;
+    private IndexedMaxHeap[] nodes;      // per component
+
+    MoveRanking(GameBoard board, VisibilityGraph visGraph, ConstraintGraph consGraph) {
+        this.board = board;
+        this.topo = board.topology();
+        this.segs = topo.segs;
+        this.visGraph = visGraph;
+        this.consGraph = consGraph;
+        hUnlit = new int[segs.hCount];
+        vUnlit = new int[segs.vCount];
+        slot = new int[topo.n];
+        int count = visGraph.componentCount();
+        components = new IndexedMaxHeap(count);
+        nodes = new IndexedMaxHeap[count];
+        for (int q = 0; q < count; q++) {
+            nodes[q] = new IndexedMaxHeap(visGraph.end(q) - visGraph.start(q));
+            for (int k = visGraph.start(q); k < visGraph.end(q); k++) {
+                int i = visGraph.cell(k);
+                slot[i] = k - visGraph.start(q);
+                if (!lit(i)) { hUnlit[segs.hSeg[i]]++; vUnlit[segs.vSeg[i]]++; }
+            }
+        }
+        for (int q = 0; q < count; q++) {
+            rekeyComponent(q);
+            for (int k = visGraph.start(q); k < visGraph.end(q); k++) recheck(visGraph.cell(k));
+        }
+        board.addListener(this);
+    }
+
+    /**
+     * The best candidate of the best component that has one, or null.
+     * Components without a candidate are taken off while looking and put
+     * back afterwards.
+     */
+    Point best() {
+        int[] skipped = new int[components.size()];
+        int n = 0;
+        Point move = null;
+        while (!components.isEmpty()) {
+            int q = components.peek();
+            if (!nodes[q].isEmpty()) {
+                int i = freshTop(q);
+                move = new Point(i / topo.size, i % topo.size);
+                break;
+            }
+            skipped[n++] = components.poll();
+        }
+        for (int k = 0; k < n; k++) rekeyComponent(skipped[k]);
+        return move;
+    }
+
+    @Override
+    public void litChanged(int row, int col, boolean on) {
+        int i = row * topo.size + col;
+        if (!topo.isEmpty(i)) return;
+        int d = on ? -1 : 1, h = segs.hSeg[i], v = segs.vSeg[i];
+        hUnlit[h] += d;
+        vUnlit[v] += d;
+        rekeyComponent(visGraph.componentOf(i));
+        if (on) return;
+        // a cell going dark raises gains, which the lazy keys cannot absorb
+        for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) recheck(segs.hCells[k]);
+        for (int k = segs.vStart[v]; k < segs.vStart[v + 1]; k++) recheck(segs.vCells[k]);
+    }
+
+    @Override
+    public void bulbPlaced(int row, int col) {
+        int i = row * topo.size + col;
+        if (!topo.isEmpty(i)) return;
+        recheck(i);
+        // the clues beside it may now be full, ruling out their other neighbours
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int j = topo.clueCells[k];
+            for (int s = 4 * j; s < 4 * j + 4; s++) {
+                int e = topo.nbrs[s];
+                if (e >= 0 && topo.isEmpty(e)) recheck(e);
+            }
+        }
+    }
+
+    @Override
+    public void blockedChanged(int row, int col, boolean blocked) {
+        int i = row * topo.size + col;
+        if (topo.isEmpty(i)) recheck(i);
+    }
+
+    private void rekeyComponent(int q) {
+        int unlit = visGraph.unlitCount(q);
+        if (unlit > 0) components.set(q, (long) unlit << 32 | (Integer.MAX_VALUE - q));
+        else components.remove(q);
+    }
+
+    /** Cell of component q's best node, refreshing stale keys from the top down. */
+    private int freshTop(int q) {
+        IndexedMaxHeap heap = nodes[q];
+        while (true) {
+            int i = visGraph.cell(visGraph.start(q) + heap.peek());
+            long fresh = key(i);
+            if (fresh == heap.key(slot[i])) return i;
+            heap.set(slot[i], fresh);
+        }
+    }
+
+    private void recheck(int i) {
+        int row = i / topo.size, col = i % topo.size;
+        IndexedMaxHeap heap = nodes[visGraph.componentOf(i)];
+        if (board.isBlocked(row, col) || board.hasBulb(row, col) || consGraph.wouldOverfillNeighbour(row, col))
+            heap.remove(slot[i]);
+        else
+            heap.set(slot[i], key(i));
+    }
+
+    private long key(int i) {
+        int newlyLit = hUnlit[segs.hSeg[i]] + vUnlit[segs.vSeg[i]] - (lit(i) ? 0 : 1);
+        return (long) newlyLit << 42 | (long) segs.visibleCount(i) << 21 | (0x1FFFFF - i);
+    }
+
+    private boolean lit(int i) {
+        return board.isLit(i / topo.size, i % topo.size);
+    }
+}
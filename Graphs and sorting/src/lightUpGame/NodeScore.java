@@ -1,11 +0,0 @@
-package lightUpGame;
-
-class NodeScore {
-    Point point;
-    int score;
-    
-    NodeScore(Point point, int score) {
-        this.point = point;
-        this.score = score;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package lightUpGame;
+
+import java.util.*;
+
+// Static facts of one puzzle, decoded once from the int[][] and shared by
+// every board, solver and window opened on it.  Cells are indexed
+// r * size + c; everything is immutable after construction.
+final class PuzzleTopology {
+    private static final CellType[] TYPES = CellType.values();
+
+    final int size, n;
+    final int[] values;                 // grid values: -1=black, 0-4=numbered, else empty
+    final byte[] kind;                  // CellType ordinal of every cell
+    final long[] empty;                 // bitboard of EMPTY cells, bit i = cell i
+    final int[] nbrs;                   // 4 slots per cell: up, down, left, right; -1 off board
+    // CSR: numbered neighbours of cell i are clueCells[clueStart[i] .. clueStart[i+1])
+    final int[] clueStart, clueCells;
+    // Rooms: 4-connected regions of EMPTY cells, numbered in row-major order
+    // of their first cell.  room[i] is -1 on walls.
+    final int[] room;
+    final int roomCount;
+    final int[] roomStart, roomCells;   // CSR, cells ascending within a room
+    final SegmentIndex segs;
+    private final int[][] grid;         // private copy, the cache key
+
+    private PuzzleTopology(int[][] puzzle) {
+        size = puzzle.length;
+        n = size * size;
+        grid = new int[size][];
+        for (int r = 0; r < size; r++) grid[r] = puzzle[r].clone();
+
+        values = new int[n];
+        kind = new byte[n];
+        empty = new long[(n + 63) >>> 6];
+        nbrs = new int[4 * n];
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++) {
+                int i = r * size + c, v = grid[r][c];
+                values[i] = v;
+                CellType t = v == -1 ? CellType.BLACK : (v >= 0 && v <= 4) ? CellType.NUMBERED : CellType.EMPTY;
+                kind[i] = (byte) t.ordinal();
+                if (t == CellType.EMPTY) empty[i >>> 6] |= 1L << i;
+                nbrs[4 * i]     = r > 0        ? i - size : -1;
+                nbrs[4 * i + 1] = r < size - 1 ? i + size : -1;
+                nbrs[4 * i + 2] = c > 0        ? i - 1    : -1;
+                nbrs[4 * i + 3] = c < size - 1 ? i + 1    : -1;
+            }
+
+        clueStart = new int[n + 1];
+        int k = 0;
+        for (int i = 0; i < n; i++)
+            for (int d = 0; d < 4; d++) { int j = nbrs[4 * i + d]; if (j >= 0 && isNumbered(j)) k++; }
+        clueCells = new int[k];
+        k = 0;
+        for (int i = 0; i < n; i++) {
+            clueStart[i] = k;
+            for (int d = 0; d < 4; d++) { int j = nbrs[4 * i + d]; if (j >= 0 && isNumbered(j)) clueCells[k++] = j; }
+        }
+        clueStart[n] = k;
+
+        // Union-find in one row-major pass: each empty cell joins the empty
+        // cells above and to its left, and a root is always the smallest
+        // cell of its set.  Reaching a cell that is its own root therefore
+        // opens the next room, and every other cell takes its root's room.
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (!isEmpty(i)) continue;
+            parent[i] = i;
+            int up = nbrs[4 * i], left = nbrs[4 * i + 2];
+            if (up >= 0 && isEmpty(up)) union(parent, up, i);
+            if (left >= 0 && isEmpty(left)) union(parent, left, i);
+        }
+        room = new int[n];
+        int rooms = 0;
+        int[] starts = new int[n + 2];
+        for (int i = 0; i < n; i++) {
+            if (!isEmpty(i)) { room[i] = -1; continue; }
+            int root = find(parent, i);
+            room[i] = root == i ? rooms++ : room[root];
+            starts[room[i] + 2]++;
+        }
+        for (int q = 0; q < rooms; q++) starts[q + 2] += starts[q + 1];
+        roomCount = rooms;
+        roomCells = new int[starts[rooms + 1]];
+        for (int i = 0; i < n; i++) if (room[i] >= 0) roomCells[starts[room[i] + 1]++] = i;
+        roomStart = Arrays.copyOf(starts, rooms + 1);
+
+        segs = new SegmentIndex(grid);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) i = parent[i] = parent[parent[i]];   // path halving
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a), rb = find(parent, b);
+        if (ra < rb) parent[rb] = ra; else if (rb < ra) parent[ra] = rb;
+    }
+
+    CellType type(int i)        { return TYPES[kind[i]]; }
+    boolean isEmpty(int i)      { return kind[i] == 0; }   // CellType.EMPTY
+    boolean isNumbered(int i)   { return kind[i] == 2; }   // CellType.NUMBERED
+    int roomSize(int q)         { return roomStart[q + 1] - roomStart[q]; }
+
+    // ── cache ────────────────────────────────────────────────
+    // Windows opened on the same shared puzzle get the same instance.
+    // Keyed by deep hash and checked with deepEquals, so a puzzle edited in
+    // place is recompiled rather than served stale.
+    private static final int CACHE_SIZE = 16;
+    private static final Map<Key, PuzzleTopology> CACHE =
+            new LinkedHashMap<Key, PuzzleTopology>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, PuzzleTopology> e) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    static PuzzleTopology of(int[][] puzzle) {
+        Key probe = new Key(puzzle);
+        synchronized (CACHE) {
+            PuzzleTopology t = CACHE.get(probe);
+            if (t != null) return t;
+        }
+        PuzzleTopology t = new PuzzleTopology(puzzle);
+        synchronized (CACHE) {
+            PuzzleTopology raced = CACHE.putIfAbsent(new Key(t.grid), t);
+            return raced != null ? raced : t;
+        }
+    }
+
+    private static final class Key {
+        final int[][] grid;
+        final int hash;
+        Key(int[][] grid) { this.grid = grid; this.hash = Arrays.deepHashCode(grid); }
+        @Override public int hashCode() { return hash; }
+        @Override public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && Arrays.deepEquals(((Key) o).grid, grid);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package lightUpGame;
+
+import java.util.*;
+
+// Fast greedy first pass that treats the puzzle as set cover: a candidate
+// bulb covers the empty cells it would light, and the greedy keeps taking
+// the candidate that covers the most cells still dark.  Gains live in a
+// BucketQueue; covering a cell lowers the gain of every candidate that
+// sees it by one, an O(1) move between buckets, so a whole board costs
+// time linear in its visibility edges.
+//
+// Clues are checked through a ConstraintGraph on a scratch copy of the
+// board: a candidate that would overfill a clue is dropped, and after
+// every bulb the clues it touched are settled (all free neighbours
+// needed -> placed, none left -> the rest blocked) from a worklist, so
+// each check is paid for by a change next to the clue.  The result is not guaranteed
+// to solve the puzzle; AlgorithmSolver's COVER and BEAM modes run it
+// before their own move choice and follow it when it does.
+class SetCoverSolver {
+    private GameBoard board;
+    private PuzzleTopology topo;
+    private SegmentIndex segs;
+    private GameBoard work;              // scratch copy the greedy places on
+    private ConstraintGraph consGraph;   // clue counters of work
+    private BucketQueue queue;
+    private int[] hUnlit, vUnlit;        // per segment
+    private int[] clueStack;             // clues to settle; pending marks the ones on it
+    private BitSet pending;
+    private int clueTop;
+
+    public SetCoverSolver(GameBoard board) {
+        this.board = board;
+        this.topo = board.topology();
+        this.segs = topo.segs;
+    }
+
+    /** Bulbs to add, in the order chosen.  The board itself is left unchanged. */
+    public List<Point> solve() {
+        int size = topo.size;
+        work = new GameBoard(board.puzzle());
+        for (int i = 0; i < topo.n; i++) {
+            int r = i / size, c = i % size;
+            if (board.hasBulb(r, c)) work.placeBulb(r, c);
+            if (board.isLit(r, c)) work.setLit(r, c, true);
+            if (board.isBlocked(r, c)) work.setBlocked(r, c, true);
+        }
+        consGraph = new ConstraintGraph(work);
+
+        hUnlit = new int[segs.hCount];
+        vUnlit = new int[segs.vCount];
+        int maxGain = 0;
+        for (int i = 0; i < topo.n; i++) {
+            if (!topo.isEmpty(i)) continue;
+            if (!lit(i)) { hUnlit[segs.hSeg[i]]++; vUnlit[segs.vSeg[i]]++; }
+            maxGain = Math.max(maxGain, segs.lightCount(i));
+        }
+        queue = new BucketQueue(topo.n, maxGain);
+        for (int i = 0; i < topo.n; i++)
+            if (topo.isEmpty(i) && isCandidate(i)) queue.set(i, gain(i));
+
+        clueStack = new int[topo.n];
+        pending = new BitSet(topo.n);
+        clueTop = 0;
+        BitSet tight = consGraph.tightClues();
+        for (int j = tight.nextSetBit(0); j >= 0; j = tight.nextSetBit(j + 1)) pushClue(j);
+
+        List<Point> placed = new ArrayList<>();
+        settleClues(placed);
+        while (!queue.isEmpty()) {
+            int i = queue.peekMax();
+            if (queue.key(i) == 0) break;          // every cell is covered
+            queue.remove(i);
+            if (!isCandidate(i)) continue;         // ruled out since it was queued
+            place(i, placed);
+            settleClues(placed);
+        }
+        return placed;
+    }
+
+    /** After solve(): does the placement light every cell and meet every clue? */
+    public boolean isComplete() {
+        for (int i = 0; i < topo.n; i++) {
+            if (topo.isEmpty(i) && !lit(i)) return false;
+            if (topo.isNumbered(i) && consGraph.remaining(i / topo.size, i % topo.size) != 0) return false;
+        }
+        return true;
+    }
+
+    private boolean isCandidate(int i) {
+        int r = i / topo.size, c = i % topo.size;
+        return !work.hasBulb(r, c) && !work.isBlocked(r, c) && !consGraph.wouldOverfillNeighbour(r, c);
+    }
+
+    private int gain(int i) {
+        return hUnlit[segs.hSeg[i]] + vUnlit[segs.vSeg[i]] - (lit(i) ? 0 : 1);
+    }
+
+    private void place(int i, List<Point> placed) {
+        int size = topo.size, h = segs.hSeg[i], v = segs.vSeg[i];
+        work.placeBulb(i / size, i % size);
+        placed.add(new Point(i / size, i % size));
+        queue.remove(i);
+        for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) cover(segs.hCells[k]);
+        for (int k = segs.vStart[v]; k < segs.vStart[v + 1]; k++) if (segs.vCells[k] != i) cover(segs.vCells[k]);
+    }
+
+    // Lights and blocks cell j; if it was dark, everyone who sees it gains one less.
+    private void cover(int j) {
+        int r = j / topo.size, c = j % topo.size;
+        block(j);
+        if (lit(j)) return;
+        work.setLit(r, c, true);
+        int h = segs.hSeg[j], v = segs.vSeg[j];
+        hUnlit[h]--;
+        vUnlit[v]--;
+        for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) lower(segs.hCells[k]);
+        for (int k = segs.vStart[v]; k < segs.vStart[v + 1]; k++) lower(segs.vCells[k]);
+    }
+
+    private void block(int j) {
+        work.setBlocked(j / topo.size, j % topo.size, true);
+        queue.remove(j);
+        for (int k = topo.clueStart[j]; k < topo.clueStart[j + 1]; k++) pushClue(topo.clueCells[k]);
+    }
+
+    private void pushClue(int j) {
+        if (pending.get(j)) return;
+        pending.set(j);
+        clueStack[clueTop++] = j;
+    }
+
+    private void lower(int j) {
+        if (queue.contains(j)) queue.set(j, queue.key(j) - 1);
+    }
+
+    // Clues whose neighbourhood changed, until none can act.
+    private void settleClues(List<Point> placed) {
+        int size = topo.size;
+        while (clueTop > 0) {
+            int j = clueStack[--clueTop], row = j / size, col = j % size;
+            pending.clear(j);
+            for (int s = 4 * j; s < 4 * j + 4; s++) {
+                int e = topo.nbrs[s];
+                if (e < 0 || !topo.isEmpty(e) || work.hasBulb(e / size, e % size) || work.isBlocked(e / size, e % size)) continue;
+                int remaining = consGraph.remaining(row, col);
+                if (remaining == 0) block(e);
+                else if (remaining == consGraph.countFreeAdjacent(row, col) && isCandidate(e)) place(e, placed);
+            }
+        }
+    }
+
+    private boolean lit(int i) {
+        return work.isLit(i / topo.size, i % topo.size);
+    }
+}
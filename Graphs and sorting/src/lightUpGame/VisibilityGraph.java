@@ -1,80 +1,54 @@
 package lightUpGame;
 
-import java.util.*;
-
-public class VisibilityGraph {
+// Components are kept as flat arrays from the topology: componentOf(i) is
+// the room of cell i and its cells are cells[start(q) .. end(q)).  Each
+// component also counts its empty cells that are not lit yet, kept in step
+// with the board's lit flags through GameBoard.Listener, so scoring every
+// component is one read each.
+public class VisibilityGraph implements GameBoard.Listener {
     private GameBoard board;
+    private PuzzleTopology topo;
+    private int[] unlit;            // per component
     
     public VisibilityGraph(GameBoard board) {
         this.board = board;
-    }
-    
-    public Map<Integer, Set<Point>> findConnectedComponents() {
-        Map<Integer, Set<Point>> components = new HashMap<>();
-        boolean[][] visited = new boolean[board.getSize()][board.getSize()];
-        int componentId = 0;
-        
-        for (int row = 0; row < board.getSize(); row++) {
-            for (int col = 0; col < board.getSize(); col++) {
-                if (board.getCellType(row, col) == CellType.EMPTY && !visited[row][col]) {
-                    Set<Point> component = new HashSet<>();
-                    bfsComponent(row, col, visited, component);
-                    components.put(componentId++, component);
-                }
-            }
+        this.topo = board.topology();
+        this.unlit = new int[topo.roomCount];
+        int size = topo.size;
+        for (int k = 0; k < topo.roomCells.length; k++) {
+            int i = topo.roomCells[k];
+            if (!board.isLit(i / size, i % size)) unlit[topo.room[i]]++;
         }
-        
-        return components;
+        board.addListener(this);
     }
     
-    private void bfsComponent(int startRow, int startCol, boolean[][] visited, Set<Point> component) {
-        Queue<Point> queue = new LinkedList<>();
-        queue.offer(new Point(startRow, startCol));
-        visited[startRow][startCol] = true;
-        component.add(new Point(startRow, startCol));
-        
-        while (!queue.isEmpty()) {
-            Point current = queue.poll();
-            
-            // In the Visibility Graph, edges exist between nodes in the same row/col 
-            // with no obstacles. Standard BFS on the grid where we can move to 
-            // adjacent EMPTY cells is sufficient to find the Connected Component
-            // of the visibility graph, because if A sees B, they are connected. 
-            // Transitivity of adjacency covers the whole "room".
-            
-            int[][] dirs = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-            for (int[] dir : dirs) {
-                int r = current.x + dir[0];
-                int c = current.y + dir[1];
-                
-                if (board.isValidCell(r, c) && board.getCellType(r, c) == CellType.EMPTY) {
-                   if (!visited[r][c]) {
-                       visited[r][c] = true;
-                       component.add(new Point(r, c));
-                       queue.offer(new Point(r, c));
-                   }
-                }
-            }
-        }
+    public int componentCount() { return topo.roomCount; }
+    
+    /** Component of cell i (r * size + c), -1 for walls. */
+    int componentOf(int i) { return topo.room[i]; }
+    
+    int start(int q)       { return topo.roomStart[q]; }
+    int end(int q)         { return topo.roomStart[q + 1]; }
+    int cell(int k)        { return topo.roomCells[k]; }
+    
+    /** Empty cells of component q not lit yet, O(1). */
+    public int unlitCount(int q) { return unlit[q]; }
+    
+    @Override
+    public void litChanged(int row, int col, boolean lit) {
+        int q = topo.room[row * topo.size + col];
+        if (q >= 0) unlit[q] += lit ? -1 : 1;
     }
     
+    @Override public void bulbPlaced(int row, int col) {}
+    @Override public void blockedChanged(int row, int col, boolean blocked) {}
+    
     public int countOutgoingEdges(int row, int col) {
         return countVisibleCells(row, col);
     }
     
     public int countVisibleCells(int row, int col) {
-        int count = 0;
-        int[][] dirs = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-        
-        for (int[] dir : dirs) {
-            int r = row + dir[0];
-            int c = col + dir[1];
-            while (board.isValidCell(r, c) && board.getCellType(r, c) == CellType.EMPTY) {
-                count++;
-                r += dir[0];
-                c += dir[1];
-            }
-        }
-        return count;
+        // Cells on the row and column segments through (row, col), minus the cell itself
+        return topo.segs.visibleCount(row * board.getSize() + col);
     }
 }
\ No newline at end of file
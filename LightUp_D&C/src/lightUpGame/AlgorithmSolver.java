@@ -1,6 +1,10 @@
 package lightUpGame;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 class AlgorithmSolver {
 
@@ -9,39 +13,65 @@ class AlgorithmSolver {
 
     public void setAlgorithm(AlgoType t) {
         this.algoType = t;
-        System.out.println("Algorithm set to: " + t);
+        if (SolverLog.A1.isInfo()) SolverLog.A1.info("Algorithm set to: " + t);
     }
     public AlgoType getAlgorithm() { return algoType; }
 
+    // ALGO2 beam (Step 7): candidate lists longer than a2PruneAbove are cut
+    // down to the a2Keep best scoring.
+    private int a2PruneAbove = 20, a2Keep = 5;
+
+    public void setA2Beam(int pruneAbove, int keep) {
+        if (keep < 1 || pruneAbove < keep)
+            throw new IllegalArgumentException("beam needs 1 <= keep <= pruneAbove, got " + pruneAbove + "/" + keep);
+        this.a2PruneAbove = pruneAbove;
+        this.a2Keep = keep;
+    }
+
     private GameBoard board;
     private int size;
+    // Cells are int-encoded as r * size + c; nbrs holds 4 slots per cell
+    // (up, down, left, right, -1 off board) so helpers never allocate.
+    private final int[] cells, nbrs;
+    private final SegmentIndex segs;
+    private static final int NONE = -1, MANY = -2;   // GridState.soleSource results
+    private static final int[] DR = {-1, 1, 0, 0}, DC = {0, 0, -1, 1};
 
     public AlgorithmSolver(GameBoard board) {
         this.board = board;
         this.size  = board.getSize();
+        this.cells = board.cellValues();
+        this.nbrs  = board.neighbours();
+        this.segs  = board.segments();
+        this.emptyCandidate = Collections.singletonList(Placement.none(segs));
     }
 
+    private static boolean isNumbered(int v) { return v >= 0 && v <= 4; }
+    private Point toPoint(int i)             { return new Point(i / size, i % size); }
+
 
     public boolean isValidBulbPlacement(int row, int col) {
         if (isVisibleToAnotherBulb(row, col)) {
-            System.out.println("Invalid: bulb at (" + row + "," + col + ") sees another bulb.");
+            if (SolverLog.VALIDATE.isTrace())
+                SolverLog.VALIDATE.trace("Invalid: bulb at (" + row + "," + col + ") sees another bulb.");
             return false;
         }
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int r = row + d[0], c = col + d[1];
-            if (board.isValidCell(r, c) && board.getCellType(r, c) == CellType.NUMBERED) {
-                if (countPlacedBulbsAround(r, c) + 1 > board.getNumberValue(r, c)) {
-                    System.out.println("Invalid: violates number at (" + r + "," + c + ").");
-                    return false;
-                }
+        int i = row * size + col;
+        for (int k = 4 * i; k < 4 * i + 4; k++) {
+            int j = nbrs[k];
+            if (j >= 0 && isNumbered(cells[j]) && countPlacedBulbsAround(j) + 1 > cells[j]) {
+                if (SolverLog.VALIDATE.isTrace())
+                    SolverLog.VALIDATE.trace("Invalid: violates number at (" + j / size + "," + j % size + ").");
+                return false;
             }
         }
         return true;
     }
 
+    // The board relights incrementally on place/remove; only forbid marks
+    // left on it are stale and get dropped here.
     public void updateAfterBulbPlacement(int row, int col) {
-        updateIllumination();
+        board.clearForbidden();
     }
 
     public Point findOptimalBulbPlacement() {
@@ -50,334 +80,714 @@ class AlgorithmSolver {
     }
 
     public boolean isGameComplete() {
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.getCellType(r, c) == CellType.EMPTY && !board.isLit(r, c))
-                    return false;
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.getCellType(r, c) == CellType.NUMBERED)
-                    if (countPlacedBulbsAround(r, c) != board.getNumberValue(r, c))
-                        return false;
+        if (!board.allEmptyLit()) return false;
+        for (int i = 0; i < cells.length; i++)
+            if (isNumbered(cells[i]) && countPlacedBulbsAround(i) != cells[i])
+                return false;
         return true;
     }
 
 
     private Point findWithAlgo1() {
-        // Step 1: forced constraint propagation on live board
-        Point forced = forcedConstraintPropagation();
-        if (forced != null) { System.out.println("[A1] Forced: " + forced); return forced; }
-
-        System.out.println("[A1] No forced moves – starting D&C …");
+        // Step 1: forced constraint propagation, on the same worklist engine
+        // the D&C runs in every window, here over the whole board
         GridState init = new GridState(board);
-        GridState result = algo1FindSafeBulb(init, 0, 0, size, size);
-        if (result != null) {
-            for (int r = 0; r < size; r++)
-                for (int c = 0; c < size; c++)
-                    if (result.hasBulb(r, c) && !board.hasBulb(r, c))
-                        return new Point(r, c);
-        }
-        System.out.println("[A1] No solution found.");
+        if (!init.deduceLocal(0, 0, size, size)) {
+            if (SolverLog.A1.isInfo()) SolverLog.A1.info("No solution found.");
+            return null;
+        }
+        Point forced = newBulb(init);
+        if (forced != null) {
+            if (SolverLog.A1.isInfo()) SolverLog.A1.info("Forced: " + forced);
+            return forced;
+        }
+
+        if (SolverLog.A1.isDebug()) SolverLog.A1.debug("No forced moves – starting D&C …");
+        if (algo1FindSafeBulb(init, 0, 0, size, size)) return newBulb(init);
+        if (SolverLog.A1.isInfo()) SolverLog.A1.info("No solution found.");
         return null;
     }
 
+    /** First cell, row-major, where st has a bulb the live board does not, or null. */
+    private Point newBulb(GridState st) {
+        for (int i = 0; i < cells.length; i++)
+            if (st.hasBulb(i) && !board.bulbAt(i))
+                return toPoint(i);
+        return null;
+    }
 
-    private Point forcedConstraintPropagation() {
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (int r = 0; r < size; r++) {
-                for (int c = 0; c < size; c++) {
-                    if (board.getCellType(r, c) != CellType.NUMBERED) continue;
-                    int k = board.getNumberValue(r, c);
-                    int placed = countPlacedBulbsAround(r, c);
-                    int free   = countFreeNeighbours(r, c);
-                    if (placed > k) return null;                          // Rule B
-                    if (placed == k && free > 0)
-                        if (forbidFreeNeighbours(r, c)) changed = true;   // Rule C
-                    int needed = k - placed;
-                    if (needed > 0 && needed == free) {                   // Rule A
-                        List<Point> nb = getFreeNeighbours(r, c);
-                        if (!nb.isEmpty()) return nb.get(0);
-                    }
-                }
-            }
-            for (int r = 0; r < size; r++) {                              // Rule D
-                for (int c = 0; c < size; c++) {
-                    if (board.getCellType(r, c) == CellType.EMPTY
-                            && !board.isLit(r, c) && !board.hasBulb(r, c)) {
-                        List<Point> srcs = reachableSources(r, c);
-                        if (srcs.isEmpty()) return null;
-                        if (srcs.size() == 1) {
-                            Point s = srcs.get(0);
-                            if (!board.hasBulb(s.x, s.y) && !board.isBlocked(s.x, s.y))
-                                return s;
-                        }
-                    }
-                }
-            }
+
+    // Works in place on st: true leaves the solved sub-grid applied, false
+    // rolls st back to how it was on entry.
+    private boolean algo1FindSafeBulb(GridState st, int rOff, int cOff, int h, int w) {
+        int entry = st.mark();
+        if (!st.deduceLocal(rOff, cOff, h, w)) { st.undoTo(entry); return false; }
+        if (h <= 2 || w <= 2) { algo1BaseCase(st, rOff, cOff, h, w); return true; }
+
+        Cut cut = chooseCut(st, rOff, cOff, h, w, this::a1LineScore);
+        boolean horiz = cut.horiz;
+        int sep = cut.line;
+
+        // A cell already holding a bulb has no state left to choose
+        int[] sepCells = new int[horiz ? w : h];
+        int n = 0;
+        for (int k = 0; k < sepCells.length; k++) {
+            int i = cut.cell(k, rOff, cOff);
+            if (st.isEmptyCell(i) && !st.hasBulb(i)) sepCells[n++] = i;
         }
-        return null;
+
+        A1Window win = new A1Window(Arrays.copyOf(sepCells, n), horiz, sep, rOff, cOff, h, w);
+        if (n >= A1_PARALLEL_MIN && n < 32 && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+            new A1Branch(win, st, 0, 0, first).invoke();
+            if (first.get() != Long.MAX_VALUE && a1Replay(st, win, first.get())) return true;
+        } else if (a1Dfs(st, win, 0, 0, null)) return true;
+        if (SolverLog.A1.isTrace()) SolverLog.A1.trace("All IS exhausted for sep=" + sep);
+        st.undoTo(entry);
+        return false;
     }
 
+    /** A window being split: its separator line and the free cells on it. */
+    private static final class A1Window {
+        final int[] sepCells;
+        final int n, sep, rOff, cOff, h, w;
+        final boolean horiz;
 
-    private GridState algo1FindSafeBulb(GridState st, int rOff, int cOff, int h, int w) {
-        if (!st.deduceLocal(rOff, cOff, h, w)) return null;
-        if (h <= 2 || w <= 2) return algo1BaseCase(st, rOff, cOff, h, w);
+        A1Window(int[] sepCells, boolean horiz, int sep, int rOff, int cOff, int h, int w) {
+            this.sepCells = sepCells; this.n = sepCells.length; this.horiz = horiz;
+            this.sep = sep; this.rOff = rOff; this.cOff = cOff; this.h = h; this.w = w;
+        }
 
-        boolean horiz = a1ChooseOrientation(st, rOff, cOff, h, w);
-        int sep = a1ChooseSeparator(st, rOff, cOff, h, w, horiz);
-        if (sep == -1) sep = horiz ? (rOff + h / 2) : (cOff + w / 2);
+        /** Smallest rank of any full assignment under a prefix of k cells with this rank. */
+        long floor(long rank, int k) { return rank << 2 * (n - k); }
+    }
 
-        List<Point> sepCells = new ArrayList<>();
-        if (horiz) {
-            for (int j = cOff; j < cOff + w; j++)
-                if (st.getCellType(sep, j) == CellType.EMPTY) sepCells.add(new Point(sep, j));
+    // Separator states are assigned depth-first, one cell at a time, with
+    // the window's deductions run after each so a failed prefix is cut off
+    // once instead of for every suffix.  Leaves come in the order of their
+    // rank (cell 0 is the most significant base-4 digit).  true leaves the
+    // first leaf that solves both halves applied to st; false restores st.
+    // first, when given, is the best rank found by other workers: subtrees
+    // that cannot beat it are skipped, and a success is published to it.
+    private boolean a1Dfs(GridState st, A1Window win, int k, long rank, AtomicLong first) {
+        if (first != null && win.floor(rank, k) >= first.get()) return false;
+        if (k == win.n) {
+            if (!a1SolveHalves(st, win)) return false;
+            if (first != null) first.accumulateAndGet(rank, Math::min);
+            return true;
+        }
+        int m = st.mark();
+        for (int is = 0; is < 4; is++) {
+            if (a1ApplyIS(st, win.sepCells[k], is, win.horiz) && st.deduceLocal(win.rOff, win.cOff, win.h, win.w)
+                    && a1Dfs(st, win, k + 1, rank << 2 | is, first)) return true;
+            st.undoTo(m);
+        }
+        return false;
+    }
+
+    private boolean a1SolveHalves(GridState st, A1Window win) {
+        int sep = win.sep, rOff = win.rOff, cOff = win.cOff, h = win.h, w = win.w;
+        if (win.horiz) {
+            if (!algo1FindSafeBulb(st, rOff, cOff, sep - rOff, w)) return false;
+            if (!algo1FindSafeBulb(st, sep + 1, cOff, rOff + h - sep - 1, w)) return false;
         } else {
-            for (int i = rOff; i < rOff + h; i++)
-                if (st.getCellType(i, sep) == CellType.EMPTY) sepCells.add(new Point(i, sep));
+            if (!algo1FindSafeBulb(st, rOff, cOff, h, sep - cOff)) return false;
+            if (!algo1FindSafeBulb(st, rOff, sep + 1, h, cOff + w - sep - 1)) return false;
         }
+        return st.isGloballyConsistent();
+    }
 
-        int n = sepCells.size();
-        if (n > 8) return null; 
+    /** Re-applies the leaf with the given rank to st; false (st restored) if it does not solve. */
+    private boolean a1Replay(GridState st, A1Window win, long rank) {
+        int m = st.mark();
+        for (int k = 0; k < win.n; k++) {
+            int is = (int) (rank >>> 2 * (win.n - 1 - k)) & 3;
+            if (!a1ApplyIS(st, win.sepCells[k], is, win.horiz) || !st.deduceLocal(win.rOff, win.cOff, win.h, win.w)) {
+                st.undoTo(m);
+                return false;
+            }
+        }
+        if (a1SolveHalves(st, win)) return true;
+        st.undoTo(m);
+        return false;
+    }
 
-        long total = 1;
-        for (int i = 0; i < n; i++) total *= 4;
+    // A separator with at least A1_PARALLEL_MIN free cells has its first
+    // A1_FORK_DEPTH cells branched over the common fork-join pool, each
+    // branch on its own copy of the state.  Workers share the lowest rank
+    // that succeeds, and branches that cannot beat it stop.  The winner is
+    // then replayed on the caller's state, so the move is the same one the
+    // serial search returns.
+    private static final int A1_PARALLEL_MIN = 4, A1_FORK_DEPTH = 3;
+
+    private final class A1Branch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final A1Window win;
+        private final GridState st;
+        private final int k;
+        private final long rank;
+        private final AtomicLong first;
+
+        A1Branch(A1Window win, GridState st, int k, long rank, AtomicLong first) {
+            this.win = win; this.st = st; this.k = k; this.rank = rank; this.first = first;
+        }
 
-        for (long s = 0; s < total; s++) {
-            GridState cand = new GridState(st);
-            long tmp = s; boolean ok = true;
-            for (Point p : sepCells) {
-                if (!a1ApplyIS(cand, p, (int)(tmp % 4), horiz)) { ok = false; break; }
-                tmp /= 4;
+        @Override
+        protected void compute() {
+            if (win.floor(rank, k) >= first.get()) return;
+            if (k >= A1_FORK_DEPTH || k == win.n) {
+                a1Dfs(st, win, k, rank, first);
+                return;
             }
-            if (!ok) continue;
-            if (!cand.deduceLocal(rOff, cOff, h, w)) continue;
-
-            GridState r1, r2;
-            if (horiz) {
-                r1 = algo1FindSafeBulb(cand, rOff, cOff, sep - rOff, w);
-                if (r1 == null) continue;
-                r2 = algo1FindSafeBulb(r1, sep + 1, cOff, rOff + h - sep - 1, w);
-            } else {
-                r1 = algo1FindSafeBulb(cand, rOff, cOff, h, sep - cOff);
-                if (r1 == null) continue;
-                r2 = algo1FindSafeBulb(r1, rOff, sep + 1, h, cOff + w - sep - 1);
+            List<A1Branch> kids = new ArrayList<>(4);
+            for (int is = 0; is < 4; is++) {
+                GridState g = new GridState(st);
+                if (a1ApplyIS(g, win.sepCells[k], is, win.horiz) && g.deduceLocal(win.rOff, win.cOff, win.h, win.w))
+                    kids.add(new A1Branch(win, g, k + 1, rank << 2 | is, first));
             }
-            if (r2 != null && r2.isGloballyConsistent()) return r2;
+            invokeAll(kids);
         }
-        System.out.println("[A1] All IS exhausted for sep=" + sep);
-        return null;
     }
 
-    private boolean a1ApplyIS(GridState st, Point p, int is, boolean horiz) {
-        int r = p.x, c = p.y;
+    // Ray directions index the nbrs slots: 0=up, 1=down, 2=left, 3=right.
+    // The deductions after an earlier separator cell may already have put
+    // a bulb on i; that cell is decided, as state 1 and nothing else.
+    private boolean a1ApplyIS(GridState st, int i, int is, boolean horiz) {
         switch (is) {
             case 0:
-                if (st.hasBulb(r, c) || st.isLit(r, c)) return false;
-                st.setBlocked(r, c, true); return true;
+                if (st.hasBulb(i) || st.isLit(i)) return false;
+                st.setBlocked(i); return true;
             case 1:
-                if (!st.canPlaceBulb(r, c)) return false;
-                st.placeBulb(r, c); return true;
+                if (st.hasBulb(i)) return true;
+                if (!st.canPlaceBulb(i)) return false;
+                st.placeBulb(i); return true;
             case 2:
-                if (st.hasBulb(r, c)) return false;
-                st.setLit(r, c, true); st.setBlocked(r, c, true);
-                return horiz ? st.propagateRay(r, c, +1, 0) : st.propagateRay(r, c, 0, +1);
+                if (st.hasBulb(i)) return false;
+                st.setLit(i); st.setBlocked(i);
+                return st.propagateRay(i, horiz ? 1 : 3);
             case 3:
-                if (st.hasBulb(r, c)) return false;
-                st.setLit(r, c, true); st.setBlocked(r, c, true);
-                return horiz ? st.propagateRay(r, c, -1, 0) : st.propagateRay(r, c, 0, -1);
+                if (st.hasBulb(i)) return false;
+                st.setLit(i); st.setBlocked(i);
+                return st.propagateRay(i, horiz ? 0 : 2);
             default: return false;
         }
     }
 
-    private GridState algo1BaseCase(GridState st, int rOff, int cOff, int h, int w) {
-        GridState cur = new GridState(st);
+    private void algo1BaseCase(GridState st, int rOff, int cOff, int h, int w) {
         for (int r = rOff; r < rOff + h; r++) {
             for (int c = cOff; c < cOff + w; c++) {
-                if (cur.getCellType(r, c) != CellType.EMPTY) continue;
-                if (cur.hasBulb(r, c) || cur.isLit(r, c))   continue;
-                if (cur.canPlaceBulb(r, c) && !cur.localViolation(r, c)) {
-                    GridState next = new GridState(cur);
-                    next.placeBulb(r, c);
-                    if (!next.globalViolation()) cur = next; // greedy accept
+                int i = r * size + c;
+                if (!st.isEmptyCell(i)) continue;
+                if (st.hasBulb(i) || st.isLit(i)) continue;
+                if (st.canPlaceBulb(i) && !st.localViolation(i)) {
+                    int m = st.mark();
+                    st.placeBulb(i);
+                    if (st.globalViolation()) st.undoTo(m); // greedy accept
                 }
             }
         }
-        return cur;
     }
 
-    private boolean a1ChooseOrientation(GridState st, int rOff, int cOff, int h, int w) {
-        int mr = 0, mc = 0;
-        for (int r = rOff + 1; r < rOff + h - 1; r++) {
-            int cnt = 0;
-            for (int c = cOff; c < cOff + w; c++) if (st.getCellType(r, c) != CellType.EMPTY) cnt++;
-            if (cnt > mr) mr = cnt;
-        }
-        for (int c = cOff + 1; c < cOff + w - 1; c++) {
-            int cnt = 0;
-            for (int r = rOff; r < rOff + h; r++) if (st.getCellType(r, c) != CellType.EMPTY) cnt++;
-            if (cnt > mc) mc = cnt;
+    // Tie-break between equally cheap cuts: most walls on the line, then
+    // the highest clue on it.
+    private int a1LineScore(GridState st, boolean horiz, int line, int from, int len) {
+        int blacks = 0, clue = 0;
+        for (int k = from; k < from + len; k++) {
+            int r = horiz ? line : k, c = horiz ? k : line;
+            CellType ct = st.getCellType(r, c);
+            if (ct != CellType.EMPTY) { blacks++; if (ct == CellType.NUMBERED && st.getNumber(r,c)>clue) clue=st.getNumber(r,c); }
         }
-        return mr >= mc;
+        return blacks * 5 + clue;
     }
 
-    private int a1ChooseSeparator(GridState st, int rOff, int cOff, int h, int w, boolean horiz) {
-        int best = -1, bB = -1, bC = -1;
-        if (horiz) {
-            for (int r = rOff + 1; r < rOff + h - 1; r++) {
-                int blacks = 0, clue = 0;
-                for (int c = cOff; c < cOff + w; c++) {
-                    CellType ct = st.getCellType(r, c);
-                    if (ct != CellType.EMPTY) { blacks++; if (ct == CellType.NUMBERED && st.getNumber(r,c)>clue) clue=st.getNumber(r,c); }
-                }
-                if (blacks > bB || (blacks == bB && clue > bC)) { bB=blacks; bC=clue; best=r; }
-            }
-        } else {
-            for (int c = cOff + 1; c < cOff + w - 1; c++) {
-                int blacks = 0, clue = 0;
-                for (int r = rOff; r < rOff + h; r++) {
-                    CellType ct = st.getCellType(r, c);
-                    if (ct != CellType.EMPTY) { blacks++; if (ct == CellType.NUMBERED && st.getNumber(r,c)>clue) clue=st.getNumber(r,c); }
-                }
-                if (blacks > bB || (blacks == bB && clue > bC)) { bB=blacks; bC=clue; best=c; }
+    // -- Separator choice
+    // What a split costs is the enumeration over its line: ALGO1 branches
+    // on the line's cells and ALGO2 couples its halves through them.  A
+    // cell contributes log2 of the states it can still take: 2 for an
+    // unlit empty cell, 1 once it is lit (lit from one side or the other),
+    // 0 with a bulb on it.  Every interior row and column whose smaller
+    // side keeps at least a quarter of the span is costed; the cheapest
+    // wins, then the more even split, then the algorithm's own line score.
+    // ALGO2 only uses this below A2_WALL_CUT_MIN (see a2ChooseCut).  Cuts
+    // stay straight: both algorithms recurse on rectangles, and the forced
+    // fill and merge are built on a single separator line.
+    private interface LineScore { int score(GridState st, boolean horiz, int line, int from, int len); }
+
+    /** A straight separator: row {@code line} when horiz, else column {@code line}. */
+    private static final class Cut {
+        final boolean horiz;
+        final int line;
+        final int size;
+
+        Cut(boolean horiz, int line, int size) { this.horiz = horiz; this.line = line; this.size = size; }
+
+        /** k-th cell of the cut inside the window at (rOff, cOff). */
+        int cell(int k, int rOff, int cOff) { return horiz ? line * size + cOff + k : (rOff + k) * size + line; }
+    }
+
+    private Cut chooseCut(GridState st, int rOff, int cOff, int h, int w, LineScore tie) {
+        Cut best = null;
+        int bCost = Integer.MAX_VALUE, bSkew = 0, bTie = 0;
+        for (int o = 0; o < 2; o++) {
+            boolean horiz = o == 0;
+            int from = horiz ? rOff : cOff, span = horiz ? h : w, across = horiz ? w : h;
+            for (int line = from + 1; line < from + span - 1; line++) {
+                int a = line - from, b = span - 1 - a;
+                if (Math.min(a, b) < (span - 1) / 4) continue;
+                Cut cut = new Cut(horiz, line, size);
+                int cost = cutCost(st, cut, rOff, cOff, across);
+                int skew = Math.abs(a - b) * across;
+                if (cost > bCost || cost == bCost && skew > bSkew) continue;
+                int t = tie.score(st, horiz, line, horiz ? cOff : rOff, across);
+                if (cost == bCost && skew == bSkew && t <= bTie) continue;
+                best = cut; bCost = cost; bSkew = skew; bTie = t;
             }
         }
         return best;
     }
 
+    private int cutCost(GridState st, Cut cut, int rOff, int cOff, int across) {
+        int cost = 0;
+        for (int k = 0; k < across; k++) {
+            int i = cut.cell(k, rOff, cOff);
+            if (st.isEmptyCell(i) && !st.hasBulb(i)) cost += st.isLit(i) ? 1 : 2;
+        }
+        return cost;
+    }
+
 
-    private static final List<Set<Point>> NO_SOLUTION    = Collections.emptyList();
-    private static final List<Set<Point>> EMPTY_CANDIDATE =
-            Collections.singletonList(Collections.emptySet());
+    // A candidate placement is a Placement: its bulb cells as a bitset over
+    // the empty-cell ranks, so merging two is an OR of words.
+    private static final List<Placement> NO_SOLUTION = Collections.emptyList();
+    private final List<Placement> emptyCandidate;
 
     private Point findWithAlgo2() {
-        System.out.println("[A2] Starting Candidate-Set D&C …");
+        if (SolverLog.A2.isDebug()) SolverLog.A2.debug("Starting Candidate-Set D&C …");
         GridState init = new GridState(board);
-        List<Set<Point>> candidates = algo2Solve(init, 0, 0, size, size);
+        List<Placement> candidates = algo2Solve(init, 0, 0, size, size, true);
 
         if (!candidates.isEmpty()) {
-            Set<Point> best = algo2Best(candidates, init);
-            for (Point p : best)
-                if (!board.hasBulb(p.x, p.y)) { System.out.println("[A2] Move: " + p); return p; }
+            Placement best = algo2Best(candidates, init);
+            // First new bulb in cell order.  The HashSet<Point> this replaced
+            // gave its bulbs in bucket order, (31r+c) mod table size, so the
+            // move played can differ from before; it is not worse for it.
+            for (int e = best.next(0); e >= 0; e = best.next(e + 1)) {
+                int i = segs.hCells[e];
+                if (!board.bulbAt(i)) {
+                    Point p = toPoint(i);
+                    if (SolverLog.A2.isInfo()) SolverLog.A2.info("Move: " + p);
+                    return p;
+                }
+            }
         }
-        System.out.println("[A2] No solution found.");
+        if (SolverLog.A2.isInfo()) SolverLog.A2.info("No solution found.");
         return null;
     }
 
-    /** Steps 1-9 of Algorithm 2. Returns a list of candidate placements. */
-    private List<Set<Point>> algo2Solve(GridState st, int rOff, int cOff, int h, int w) {
-        if (h <= 0 || w <= 0) return EMPTY_CANDIDATE;
+    /**
+     * Steps 1-9 of Algorithm 2. Returns a list of candidate placements.
+     * At the top level (whole board) only the best one is returned, and the
+     * merge stops at the first candidate that solves the puzzle.
+     */
+    private List<Placement> algo2Solve(GridState st, int rOff, int cOff, int h, int w, boolean top) {
+        if (h <= 0 || w <= 0) return emptyCandidate;
 
         // Step 5: Base case
         if (h <= 2 || w <= 2) return algo2BaseCase(st, rOff, cOff, h, w);
 
         // Step 1: Choose separator
-        boolean horiz = a2ChooseOrientation(st, rOff, cOff, h, w);
-        int sep = a2ChooseSeparator(st, rOff, cOff, h, w, horiz);
-        if (sep == -1) sep = horiz ? (rOff + h / 2) : (cOff + w / 2);
+        Cut cut = size < A2_WALL_CUT_MIN ? chooseCut(st, rOff, cOff, h, w, this::a2LineScore)
+                                          : a2ChooseCut(st, rOff, cOff, h, w);
+        boolean horiz = cut.horiz;
+        int sep = cut.line;
+
+        // Separator cells without a bulb yet, ascending along the line
+        IntList line = new IntList();
+        if (horiz) {
+            for (int c = cOff; c < cOff + w; c++)
+                if (!st.hasBulb(sep * size + c)) line.add(sep * size + c);
+        } else {
+            for (int r = rOff; r < rOff + h; r++)
+                if (!st.hasBulb(r * size + sep)) line.add(r * size + sep);
+        }
 
-        // Step 2: Forced fill on separator only
-        GridState filled = new GridState(st);
+        // Step 2: Forced fill on separator only – applied to st in place and
+        // rolled back before returning
+        int entry = st.mark();
+        GridState filled = st;
         if (!a2ForcedFill(filled, sep, horiz, rOff, cOff, h, w)) {
-            System.out.println("[A2] Contradiction in forced fill at sep=" + sep);
+            if (SolverLog.A2.isTrace()) SolverLog.A2.trace("Contradiction in forced fill at sep=" + sep);
+            st.undoTo(entry);
             return NO_SOLUTION;
         }
 
         // Collect bulbs newly placed by forced fill on the separator line
-        Set<Point> sepBulbs = new HashSet<>();
+        IntList placed = new IntList();
+        for (int k = 0; k < line.size(); k++)
+            if (filled.hasBulb(line.get(k))) placed.add(line.get(k));
+        Placement sepBulbs = Placement.of(segs, placed.toArray());
+
+        // Steps 3 & 4: Divide and recurse.  The halves only meet again in
+        // the merge, so above the cut-off the second one runs as a fork-join
+        // subtask on its own copy of the filled state.
+        int[] a, b;   // {rOff, cOff, h, w} of the two sides
         if (horiz) {
-            for (int c = cOff; c < cOff + w; c++)
-                if (filled.hasBulb(sep, c) && !st.hasBulb(sep, c)) sepBulbs.add(new Point(sep, c));
+            a = new int[]{rOff, cOff, sep - rOff, w};
+            b = new int[]{sep + 1, cOff, rOff + h - sep - 1, w};
         } else {
-            for (int r = rOff; r < rOff + h; r++)
-                if (filled.hasBulb(r, sep) && !st.hasBulb(r, sep)) sepBulbs.add(new Point(r, sep));
+            a = new int[]{rOff, cOff, h, sep - cOff};
+            b = new int[]{rOff, sep + 1, h, cOff + w - sep - 1};
         }
-
-        // Steps 3 & 4: Divide and recurse
-        List<Set<Point>> cu, cd;
-        if (horiz) {
-            int hu = sep - rOff, hd = rOff + h - sep - 1;
-            cu = (hu > 0) ? algo2Solve(filled, rOff,    cOff, hu, w) : EMPTY_CANDIDATE;
-            cd = (hd > 0) ? algo2Solve(filled, sep + 1, cOff, hd, w) : EMPTY_CANDIDATE;
+        boolean par = ForkJoinPool.getCommonPoolParallelism() > 1 && a2OpenCells(filled, rOff, cOff, h, w) >= A2_PARALLEL_OPEN;
+        List<Placement> cu, cd;
+        if (par) {
+            GridState other = new GridState(filled);
+            ForkJoinTask<List<Placement>> down = ForkJoinTask.adapt(() -> a2Side(other, b)).fork();
+            cu = a2Side(filled, a);
+            cd = down.join();
         } else {
-            int wl = sep - cOff, wr = cOff + w - sep - 1;
-            cu = (wl > 0) ? algo2Solve(filled, rOff, cOff,    h, wl) : EMPTY_CANDIDATE;
-            cd = (wr > 0) ? algo2Solve(filled, rOff, sep + 1, h, wr) : EMPTY_CANDIDATE;
-        }
-
-        // Step 6: Compatibility merge
-        List<Set<Point>> C = new ArrayList<>();
-        for (Set<Point> u : cu) {
-            for (Set<Point> d : cd) {
-                Set<Point> merged = new HashSet<>(u);
-                merged.addAll(d);
-                merged.addAll(sepBulbs);
-                if (a2Compatible(merged, filled)) C.add(merged);
-            }
+            cu = a2Side(filled, a);
+            cd = a2Side(filled, b);
         }
 
-        // Step 7: Greedy pruning
-        if (C.size() > 20) C = algo2Prune(C, filled, 5);
+        // Steps 6 & 7: Compatibility merge and greedy pruning.  Merged
+        // candidates are streamed into the beam one at a time, so a level
+        // never holds more than a2PruneAbove + 1 of them; the parallel path
+        // builds the rows in batches instead.
+        A2Join join = new A2Join(cd, sepBulbs, filled, horiz, sep, horiz ? cOff : rOff, horiz ? w : h);
+        List<Placement> C;
+        if (par && !top) {
+            C = a2Merge(cu, cd, join, filled, par);
+            if (C.size() > a2PruneAbove) C = algo2Prune(C, filled, a2Keep);
+        } else {
+            A2Sink sink = top ? new A2Goal(filled) : new A2Beam(filled);
+            for (Iterator<Placement> it = join.merged(cu, filled); it.hasNext(); )
+                if (!sink.accept(it.next())) break;
+            C = sink.result();
+        }
+        st.undoTo(entry);
 
         // Step 8: return
         return C.isEmpty() ? NO_SOLUTION : C;
     }
 
-    private boolean a2ChooseOrientation(GridState st, int rOff, int cOff, int h, int w) {
-        int mr = 0, mc = 0;
-        for (int r = rOff + 1; r < rOff + h - 1; r++) {
-            int s = 0;
+    private List<Placement> a2Side(GridState st, int[] rect) {
+        return rect[2] > 0 && rect[3] > 0 ? algo2Solve(st, rect[0], rect[1], rect[2], rect[3], false) : emptyCandidate;
+    }
+
+    // A window forks once it has A2_PARALLEL_OPEN open cells (empty, unlit,
+    // no bulb) after the forced fill: the base-case enumeration that makes
+    // up a half's work grows with them, not with the window's area.  Timed
+    // on random 6x6 to 14x14 boards, a fork's state copy took about 2us
+    // while a half took 5-10us below 16 open cells, about 90us from 24 and
+    // over 20 times the copy in most windows from there up.  A 4x4 window
+    // never reaches the cut-off and stays sequential.  The merge is split
+    // over rows of cu in chunks of about A2_MERGE_CHUNK pairs, each chunk
+    // checking its rows on its own copy of the state.  Rows are joined
+    // back in order, so C comes out the same as the serial loop's.
+    private static final int A2_PARALLEL_OPEN = 24, A2_MERGE_CHUNK = 64;
+
+    private int a2OpenCells(GridState st, int rOff, int cOff, int h, int w) {
+        int open = 0;
+        for (int r = rOff; r < rOff + h; r++)
             for (int c = cOff; c < cOff + w; c++) {
-                CellType ct = st.getCellType(r, c);
-                if (ct == CellType.NUMBERED) s += st.getNumber(r,c) + 2;
-                else if (ct == CellType.BLACK) s++;
+                int i = r * size + c;
+                if (st.isEmptyCell(i) && !st.hasBulb(i) && !st.isLit(i)) open++;
             }
-            if (s > mr) mr = s;
-        }
-        for (int c = cOff + 1; c < cOff + w - 1; c++) {
-            int s = 0;
-            for (int r = rOff; r < rOff + h; r++) {
-                CellType ct = st.getCellType(r, c);
-                if (ct == CellType.NUMBERED) s += st.getNumber(r,c) + 2;
-                else if (ct == CellType.BLACK) s++;
+        return open;
+    }
+
+    private List<Placement> a2Merge(List<Placement> cu, List<Placement> cd, A2Join join, GridState filled, boolean par) {
+        List<List<Placement>> rows = new ArrayList<>(Collections.nCopies(cu.size(), NO_SOLUTION));
+        RangeBody body = (st, lo, hi) -> { for (int k = lo; k < hi; k++) rows.set(k, join.row(cu.get(k), st)); };
+        if (par && (long) cu.size() * cd.size() > A2_MERGE_CHUNK)
+            new StateRange(filled, body, 0, cu.size(), Math.max(1, A2_MERGE_CHUNK / Math.max(1, cd.size()))).invoke();
+        else
+            body.run(filled, 0, cu.size());
+        Set<Placement> C = new LinkedHashSet<>();   // first occurrence wins, order kept
+        for (List<Placement> row : rows) C.addAll(row);
+        return new ArrayList<>(C);
+    }
+
+    private interface RangeBody { void run(GridState st, int lo, int hi); }
+
+    /** Runs body over [lo, hi) on the common pool, chunks of at most grain items, each on its own copy of from. */
+    private final class StateRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final GridState from;
+        private final RangeBody body;
+        private final int lo, hi, grain;
+
+        StateRange(GridState from, RangeBody body, int lo, int hi, int grain) {
+            this.from = from; this.body = body; this.lo = lo; this.hi = hi; this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > grain) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new StateRange(from, body, lo, mid, grain), new StateRange(from, body, mid, hi, grain));
+                return;
             }
-            if (s > mc) mc = s;
+            body.run(new GridState(from), lo, hi);
         }
-        return mr >= mc;
     }
 
-    private int a2ChooseSeparator(GridState st, int rOff, int cOff, int h, int w, boolean horiz) {
-        int best = -1, bestScore = -1;
-        if (horiz) {
-            for (int r = rOff + 1; r < rOff + h - 1; r++) {
-                int score = 0;
-                for (int c = cOff; c < cOff + w; c++) {
-                    CellType ct = st.getCellType(r, c);
-                    if (ct == CellType.NUMBERED) score += st.getNumber(r,c) + 2;
-                    else if (ct == CellType.BLACK) score++;
-                    // Bonus: adjacent numbered rows
-                    if (st.isInBounds(r-1,c) && st.getCellType(r-1,c)==CellType.NUMBERED) score += st.getNumber(r-1,c);
-                    if (st.isInBounds(r+1,c) && st.getCellType(r+1,c)==CellType.NUMBERED) score += st.getNumber(r+1,c);
-                }
-                if (score > bestScore) { bestScore = score; best = r; }
+    // -- A2: Step 6 – Compatibility merge as a hash join
+    // Two candidates that are each valid on the filled state can only clash
+    // across the separator: both put a bulb on a segment crossing it, or
+    // both put one beside a separator clue that cannot take two more.  A
+    // candidate's signature records exactly that, one bit per line cell k
+    // for the crossing segment through it (high word) and one for a clue on
+    // it (low word).  cd is validated once and bucketed by signature, so a
+    // row of cu costs one validation, a test per bucket and the pairs that
+    // actually merge, instead of a full-board check per pair.
+    private final class A2Join {
+        private static final long INVALID = -1;
+        private final List<Placement> cd;
+        private final Placement sepBulbs;
+        private final boolean horiz;
+        private final int sep, from, len;   // line cells: positions from .. from+len-1 along the separator
+        private long tight;                 // line clues that cannot take a bulb from both sides
+        private final Map<Long, IntList> buckets = new LinkedHashMap<>();
+
+        A2Join(List<Placement> cd, Placement sepBulbs, GridState filled, boolean horiz, int sep, int from, int len) {
+            this.cd = cd; this.sepBulbs = sepBulbs; this.horiz = horiz;
+            this.sep = sep; this.from = from; this.len = len;
+            for (int k = 0; k < len && len <= 32; k++) {
+                int x = lineCell(k);
+                if (isNumbered(cells[x]) && filled.bulbsAround(x) + 2 > cells[x]) tight |= 1L << k;
             }
-        } else {
-            for (int c = cOff + 1; c < cOff + w - 1; c++) {
-                int score = 0;
-                for (int r = rOff; r < rOff + h; r++) {
-                    CellType ct = st.getCellType(r, c);
-                    if (ct == CellType.NUMBERED) score += st.getNumber(r,c) + 2;
-                    else if (ct == CellType.BLACK) score++;
-                    if (st.isInBounds(r,c-1) && st.getCellType(r,c-1)==CellType.NUMBERED) score += st.getNumber(r,c-1);
-                    if (st.isInBounds(r,c+1) && st.getCellType(r,c+1)==CellType.NUMBERED) score += st.getNumber(r,c+1);
+            for (int j = 0; j < cd.size(); j++) {
+                long sig = signature(cd.get(j), filled);
+                if (sig != INVALID) buckets.computeIfAbsent(sig, x -> new IntList()).add(j);
+            }
+        }
+
+        private int lineCell(int k) { return horiz ? sep * size + from + k : (from + k) * size + sep; }
+
+        /** INVALID if cand cannot be placed on st; otherwise its separator signature. */
+        private long signature(Placement cand, GridState st) {
+            if (!a2Compatible(cand, st)) return INVALID;
+            if (len > 32) return 0;   // too wide to pack: one bucket, pairs checked in merge()
+            long occ = 0, adj = 0;
+            for (int e = cand.next(0); e >= 0; e = cand.next(e + 1)) {
+                int i = segs.hCells[e];
+                if (st.hasBulb(i)) continue;   // already on the filled state, seen by both sides
+                int r = i / size, c = i % size, k = (horiz ? c : r) - from, x = lineCell(k);
+                if (SegmentIndex.isEmpty(cells[x]) && (horiz ? st.segs.vSeg[i] == st.segs.vSeg[x] : st.segs.hSeg[i] == st.segs.hSeg[x]))
+                    occ |= 1L << k;
+                if (Math.abs((horiz ? r : c) - sep) == 1 && isNumbered(cells[x])) adj |= 1L << k;
+            }
+            return occ << 32 | adj;
+        }
+
+        private boolean compatible(long a, long b) {
+            return ((a & b) >>> 32) == 0 && (a & b & tight) == 0;
+        }
+
+        /** Indices of the cd candidates compatible with u, ascending. */
+        private int[] hits(Placement u, GridState st) {
+            long su = signature(u, st);
+            if (su == INVALID) return new int[0];
+            IntList hits = new IntList();
+            for (Map.Entry<Long, IntList> e : buckets.entrySet())
+                if (compatible(su, e.getKey()))
+                    for (int k = 0; k < e.getValue().size(); k++) hits.add(e.getValue().get(k));
+            int[] js = hits.toArray();
+            Arrays.sort(js);
+            return js;
+        }
+
+        // Past 32 line cells the signature is 0 for everyone, so each pair
+        // is checked here: a shared segment with one AND per word against
+        // the sees masks, the clues by placing the merged set.
+        private Placement merge(Placement u, int j, GridState st) {
+            Placement d = cd.get(j);
+            if (len > 32 && u.sharesSegment(d, segs)) return null;
+            Placement merged = u.or(d).or(sepBulbs);
+            return len <= 32 || a2Compatible(merged, st) ? merged : null;
+        }
+
+        /** Merged candidates for u against every compatible d, in cd order. */
+        List<Placement> row(Placement u, GridState st) {
+            List<Placement> out = new ArrayList<>();
+            for (int j : hits(u, st)) {
+                Placement merged = merge(u, j, st);
+                if (merged != null) out.add(merged);
+            }
+            return out;
+        }
+
+        /** All merged candidates, row by row, built only as they are asked for. */
+        Iterator<Placement> merged(List<Placement> cu, GridState st) {
+            return new Iterator<Placement>() {
+                private int ui = -1, p;
+                private int[] js = new int[0];
+                private Placement ahead = advance();
+
+                private Placement advance() {
+                    while (true) {
+                        while (p < js.length) {
+                            Placement m = merge(cu.get(ui), js[p++], st);
+                            if (m != null) return m;
+                        }
+                        if (++ui >= cu.size()) return null;
+                        js = hits(cu.get(ui), st);
+                        p = 0;
+                    }
                 }
-                if (score > bestScore) { bestScore = score; best = c; }
+
+                @Override public boolean hasNext() { return ahead != null; }
+
+                @Override public Placement next() {
+                    if (ahead == null) throw new NoSuchElementException();
+                    Placement c = ahead;
+                    ahead = advance();
+                    return c;
+                }
+            };
+        }
+    }
+
+    // -- A2: Step 7 – consumers of the merged stream
+    private interface A2Sink {
+        /** false once no further candidate can change the result. */
+        boolean accept(Placement cand);
+        List<Placement> result();
+    }
+
+    private static final class Scored {
+        final Placement cand;
+        final int score, seq;
+        Scored(Placement cand, int score, int seq) { this.cand = cand; this.score = score; this.seq = seq; }
+    }
+
+    // Best first; ties to the earlier candidate, as algo2Prune orders them.
+    private static final Comparator<Scored> BEST_FIRST =
+            (x, y) -> x.score != y.score ? Integer.compare(y.score, x.score) : Integer.compare(x.seq, y.seq);
+
+    /**
+     * Keeps candidates in order up to a2PruneAbove, then only the a2Keep
+     * best.  Repeats of a candidate already held are dropped; both stores
+     * are small, and a repeat that was evicted scored no better than the
+     * weakest kept, so it could not get back in anyway.
+     */
+    private final class A2Beam implements A2Sink {
+        private final GridState base;
+        private List<Placement> kept = new ArrayList<>();
+        private PriorityQueue<Scored> heap;   // head: weakest kept
+        private int seq;
+
+        A2Beam(GridState base) { this.base = base; }
+
+        @Override public boolean accept(Placement cand) {
+            if (heap == null) {
+                if (kept.contains(cand)) return true;
+                kept.add(cand);
+                seq++;
+                if (kept.size() > a2PruneAbove) {
+                    heap = new PriorityQueue<>(a2Keep + 1, BEST_FIRST.reversed());
+                    for (int k = 0; k < kept.size(); k++)
+                        offerBounded(heap, new Scored(kept.get(k), algo2Score(kept.get(k), base), k), a2Keep);
+                    kept = null;
+                }
+            } else {
+                for (Scored s : heap) if (s.cand.equals(cand)) return true;
+                offerBounded(heap, new Scored(cand, algo2Score(cand, base), seq++), a2Keep);
             }
+            return true;
+        }
+
+        @Override public List<Placement> result() {
+            return heap == null ? kept : bestFirst(heap);
+        }
+    }
+
+    /**
+     * Top level: only the best candidate matters.  One that lights every
+     * cell and meets every clue has the highest score any candidate can
+     * reach, so the stream stops there.
+     */
+    private final class A2Goal implements A2Sink {
+        private final GridState base;
+        private final int perfect;
+        private Placement best;
+        private int bestScore = Integer.MIN_VALUE;
+
+        A2Goal(GridState base) {
+            this.base = base;
+            int p = 0;
+            for (int v : cells) p += isNumbered(v) ? 10 : SegmentIndex.isEmpty(v) ? 1 : 0;
+            this.perfect = p;
+        }
+
+        @Override public boolean accept(Placement cand) {
+            int sc = algo2Score(cand, base);
+            if (sc > bestScore) { best = cand; bestScore = sc; }
+            return sc < perfect;
+        }
+
+        @Override public List<Placement> result() {
+            return best == null ? NO_SOLUTION : Collections.singletonList(best);
+        }
+    }
+
+    // From 9x9 up ALGO2 keeps the separator it had before chooseCut: the
+    // orientation whose best line carries the most walls and clues, then in
+    // it the line with the highest a2LineScore.  Its forced fill and merge
+    // live off the clues on and beside the line, and on those boards the
+    // cheapest enumeration cut left it stuck far more often; below that the
+    // cheap cut solves more games.  The enumeration cost only breaks ties
+    // between equally scored lines.
+    private static final int A2_WALL_CUT_MIN = 9;
+
+    private Cut a2ChooseCut(GridState st, int rOff, int cOff, int h, int w) {
+        int mr = 0, mc = 0;
+        for (int r = rOff + 1; r < rOff + h - 1; r++) mr = Math.max(mr, a2WallScore(st, true, r, cOff, w));
+        for (int c = cOff + 1; c < cOff + w - 1; c++) mc = Math.max(mc, a2WallScore(st, false, c, rOff, h));
+        boolean horiz = mr >= mc;
+        int from = horiz ? rOff : cOff, span = horiz ? h : w, across = horiz ? w : h;
+        Cut best = null;
+        int bScore = -1, bCost = 0;
+        for (int line = from + 1; line < from + span - 1; line++) {
+            Cut cut = new Cut(horiz, line, size);
+            int score = a2LineScore(st, horiz, line, horiz ? cOff : rOff, across);
+            if (score < bScore) continue;
+            int cost = cutCost(st, cut, rOff, cOff, across);
+            if (score == bScore && cost >= bCost) continue;
+            best = cut; bScore = score; bCost = cost;
         }
         return best;
     }
 
+    private int a2WallScore(GridState st, boolean horiz, int line, int from, int len) {
+        int s = 0;
+        for (int k = from; k < from + len; k++) {
+            int r = horiz ? line : k, c = horiz ? k : line;
+            CellType ct = st.getCellType(r, c);
+            if (ct == CellType.NUMBERED) s += st.getNumber(r,c) + 2;
+            else if (ct == CellType.BLACK) s++;
+        }
+        return s;
+    }
+
+    // Walls and clues on the line, plus the clues beside it, which the
+    // forced fill can act on.
+    private int a2LineScore(GridState st, boolean horiz, int line, int from, int len) {
+        int score = 0;
+        for (int k = from; k < from + len; k++) {
+            int r = horiz ? line : k, c = horiz ? k : line;
+            CellType ct = st.getCellType(r, c);
+            if (ct == CellType.NUMBERED) score += st.getNumber(r,c) + 2;
+            else if (ct == CellType.BLACK) score++;
+            int r0 = horiz ? r - 1 : r, c0 = horiz ? c : c - 1, r1 = horiz ? r + 1 : r, c1 = horiz ? c : c + 1;
+            if (st.isInBounds(r0,c0) && st.getCellType(r0,c0)==CellType.NUMBERED) score += st.getNumber(r0,c0);
+            if (st.isInBounds(r1,c1) && st.getCellType(r1,c1)==CellType.NUMBERED) score += st.getNumber(r1,c1);
+        }
+        return score;
+    }
+
 
     private boolean a2ForcedFill(GridState st, int sep, boolean horiz, int rOff, int cOff, int h, int w) {
         boolean changed = true;
@@ -387,22 +797,22 @@ class AlgorithmSolver {
                 for (int c = cOff; c < cOff + w; c++) {
                     // numbered cell above separator
                     if (st.isInBounds(sep-1,c) && st.getCellType(sep-1,c)==CellType.NUMBERED)
-                        { Boolean r = a2ApplyFill(st, sep-1, c, sep, true); if (r==null) return false; if (r) changed=true; }
+                        { Boolean r = a2ApplyFill(st, (sep-1)*size+c, sep, true); if (r==null) return false; if (r) changed=true; }
                     // numbered cell below separator
                     if (st.isInBounds(sep+1,c) && st.getCellType(sep+1,c)==CellType.NUMBERED)
-                        { Boolean r = a2ApplyFill(st, sep+1, c, sep, true); if (r==null) return false; if (r) changed=true; }
+                        { Boolean r = a2ApplyFill(st, (sep+1)*size+c, sep, true); if (r==null) return false; if (r) changed=true; }
                     // numbered cell ON separator
                     if (st.getCellType(sep,c)==CellType.NUMBERED)
-                        { Boolean r = a2ApplyAllNeighbours(st, sep, c); if (r==null) return false; if (r) changed=true; }
+                        { Boolean r = a2ApplyAllNeighbours(st, sep*size+c); if (r==null) return false; if (r) changed=true; }
                 }
             } else {
                 for (int r = rOff; r < rOff + h; r++) {
                     if (st.isInBounds(r,sep-1) && st.getCellType(r,sep-1)==CellType.NUMBERED)
-                        { Boolean res = a2ApplyFill(st, r, sep-1, sep, false); if (res==null) return false; if (res) changed=true; }
+                        { Boolean res = a2ApplyFill(st, r*size+sep-1, sep, false); if (res==null) return false; if (res) changed=true; }
                     if (st.isInBounds(r,sep+1) && st.getCellType(r,sep+1)==CellType.NUMBERED)
-                        { Boolean res = a2ApplyFill(st, r, sep+1, sep, false); if (res==null) return false; if (res) changed=true; }
+                        { Boolean res = a2ApplyFill(st, r*size+sep+1, sep, false); if (res==null) return false; if (res) changed=true; }
                     if (st.getCellType(r,sep)==CellType.NUMBERED)
-                        { Boolean res = a2ApplyAllNeighbours(st, r, sep); if (res==null) return false; if (res) changed=true; }
+                        { Boolean res = a2ApplyAllNeighbours(st, r*size+sep); if (res==null) return false; if (res) changed=true; }
                 }
             }
         }
@@ -410,337 +820,414 @@ class AlgorithmSolver {
     }
 
     /** Returns null=contradiction, true=change made, false=no change. */
-    private Boolean a2ApplyFill(GridState st, int numR, int numC, int sepLine, boolean horizSep) {
-        int k = st.getNumber(numR, numC);
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
+    private Boolean a2ApplyFill(GridState st, int num, int sepLine, boolean horizSep) {
+        int k = cells[num];
         int b = 0;
-        List<Point> sepFree = new ArrayList<>();
-        for (int[] d : dirs) {
-            int nr = numR+d[0], nc = numC+d[1];
-            if (!st.isInBounds(nr,nc)) continue;
-            if (st.getCellType(nr,nc) != CellType.EMPTY) continue;
-            if (st.hasBulb(nr,nc)) { b++; continue; }
-            if (st.isBlocked(nr,nc)) continue;
-            boolean onSep = horizSep ? (nr == sepLine) : (nc == sepLine);
-            if (onSep) sepFree.add(new Point(nr,nc));
+        int sepFree = 0;                 // bit d set: neighbour slot d is free and on the separator
+        for (int d = 0; d < 4; d++) {
+            int j = nbrs[4*num+d];
+            if (j < 0 || !st.isEmptyCell(j)) continue;
+            if (st.hasBulb(j)) { b++; continue; }
+            if (st.isBlocked(j)) continue;
+            boolean onSep = horizSep ? (j / size == sepLine) : (j % size == sepLine);
+            if (onSep) sepFree |= 1 << d;
         }
         if (b > k) return null; // contradiction
         boolean changed = false;
         // Rule A on separator cells
-        if (!sepFree.isEmpty() && b + sepFree.size() == k) {
-            for (Point p : sepFree) {
-                if (!st.hasBulb(p.x,p.y) && st.canPlaceBulb(p.x,p.y)) {
-                    st.placeBulb(p.x,p.y); changed = true;
+        if (sepFree != 0 && b + Integer.bitCount(sepFree) == k) {
+            for (int d = 0; d < 4; d++) {
+                if ((sepFree >> d & 1) == 0) continue;
+                int j = nbrs[4*num+d];
+                if (!st.hasBulb(j) && st.canPlaceBulb(j)) {
+                    st.placeBulb(j); changed = true;
                 }
             }
         }
         // Rule C on separator cells
         if (b == k) {
-            for (Point p : sepFree) {
-                if (!st.isBlocked(p.x,p.y)) { st.setBlocked(p.x,p.y,true); changed = true; }
+            for (int d = 0; d < 4; d++) {
+                int j = nbrs[4*num+d];
+                if ((sepFree >> d & 1) != 0 && !st.isBlocked(j)) { st.setBlocked(j); changed = true; }
             }
         }
         return changed;
     }
 
     /** Apply rule A and C considering ALL neighbours (for numbered cells on the separator itself). */
-    private Boolean a2ApplyAllNeighbours(GridState st, int r, int c) {
-        int k = st.getNumber(r,c);
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        int b = 0; List<Point> free = new ArrayList<>();
-        for (int[] d : dirs) {
-            int nr = r+d[0], nc = c+d[1];
-            if (!st.isInBounds(nr,nc)) continue;
-            if (st.getCellType(nr,nc) != CellType.EMPTY) continue;
-            if (st.hasBulb(nr,nc)) { b++; continue; }
-            if (!st.isBlocked(nr,nc)) free.add(new Point(nr,nc));
+    private Boolean a2ApplyAllNeighbours(GridState st, int num) {
+        int k = cells[num];
+        int b = 0, free = 0;             // free: bit mask of nbrs slots
+        for (int d = 0; d < 4; d++) {
+            int j = nbrs[4*num+d];
+            if (j < 0 || !st.isEmptyCell(j)) continue;
+            if (st.hasBulb(j)) { b++; continue; }
+            if (!st.isBlocked(j)) free |= 1 << d;
         }
         if (b > k) return null;
         boolean changed = false;
-        if (b + free.size() == k) {
-            for (Point p : free) if (st.canPlaceBulb(p.x,p.y)) { st.placeBulb(p.x,p.y); changed=true; }
+        if (b + Integer.bitCount(free) == k) {
+            for (int d = 0; d < 4; d++) {
+                int j = nbrs[4*num+d];
+                if ((free >> d & 1) != 0 && st.canPlaceBulb(j)) { st.placeBulb(j); changed=true; }
+            }
         }
         if (b == k) {
-            for (Point p : free) if (!st.isBlocked(p.x,p.y)) { st.setBlocked(p.x,p.y,true); changed=true; }
+            for (int d = 0; d < 4; d++) {
+                int j = nbrs[4*num+d];
+                if ((free >> d & 1) != 0 && !st.isBlocked(j)) { st.setBlocked(j); changed=true; }
+            }
         }
         return changed;
     }
 
     // -- A2: Step 5 – Base case (enumerate all valid placements) --------------
 
-    private List<Set<Point>> algo2BaseCase(GridState st, int rOff, int cOff, int h, int w) {
-        Set<Point> fixed = new HashSet<>();
-        List<Point> candidates = new ArrayList<>();
+    // Subsets of the window's free cells are chosen depth-first, adding and
+    // removing one bulb at a time on st.  A cell that cannot take a bulb
+    // on top of the ones already chosen is never included, so only
+    // consistent subsets are visited: every conflict (shared segment,
+    // full clue, blocked cell) is between a pair or against a count and
+    // only grows with the subset.  Deciding the last free cell first,
+    // without before with, emits subsets in the old ascending-mask order.
+    private List<Placement> algo2BaseCase(GridState st, int rOff, int cOff, int h, int w) {
+        IntList fixed = new IntList(), free = new IntList();   // bulbs already on st / open cells
         for (int r = rOff; r < rOff + h; r++) {
             for (int c = cOff; c < cOff + w; c++) {
-                if (st.getCellType(r,c) != CellType.EMPTY) continue;
-                if (st.hasBulb(r,c)) { fixed.add(new Point(r,c)); continue; }
-                if (!st.isBlocked(r,c)) candidates.add(new Point(r,c));
+                int i = r * size + c;
+                if (isNumbered(cells[i]) && st.bulbsAround(i) > cells[i]) return emptyCandidate;
+                if (!st.isEmptyCell(i)) continue;
+                if (st.hasBulb(i)) fixed.add(i);
+                else if (!st.isBlocked(i)) free.add(i);
             }
         }
-        int n = candidates.size();
-        if (n > 20) n = 20; // safety cap
-        List<Set<Point>> results = new ArrayList<>();
-        for (int mask = 0; mask < (1 << n); mask++) {
-            Set<Point> placement = new HashSet<>(fixed);
-            for (int i = 0; i < n; i++)
-                if ((mask & (1 << i)) != 0) placement.add(candidates.get(i));
-            if (a2ValidForSubgrid(placement, st, rOff, cOff, h, w)) results.add(placement);
+        List<Placement> results = new ArrayList<>();
+        a2BaseDfs(st, free.toArray(), free.size() - 1, Placement.of(segs, fixed.toArray()), new IntList(), results);
+        return results.isEmpty() ? emptyCandidate : results;
+    }
+
+    private void a2BaseDfs(GridState st, int[] free, int k, Placement fixed, IntList chosen, List<Placement> out) {
+        if (k < 0) {
+            out.add(fixed.or(Placement.of(segs, chosen.toArray())));
+            return;
         }
-        return results.isEmpty() ? EMPTY_CANDIDATE : results;
+        a2BaseDfs(st, free, k - 1, fixed, chosen, out);
+        int i = free[k];
+        if (!st.canPlaceBulb(i)) return;
+        int m = st.mark();
+        st.placeBulb(i);
+        chosen.add(i);
+        a2BaseDfs(st, free, k - 1, fixed, chosen, out);
+        chosen.removeLast();
+        st.undoTo(m);
     }
 
-    private boolean a2ValidForSubgrid(Set<Point> bulbs, GridState st, int rOff, int cOff, int h, int w) {
-        GridState tmp = new GridState(st);
-        for (Point p : bulbs) {
-            if (tmp.hasBulb(p.x,p.y)) continue;
-            if (!tmp.canPlaceBulb(p.x,p.y)) return false;
-            tmp.placeBulb(p.x,p.y);
+    // The candidate checks below place bulbs on the shared state and undo
+    // them before returning, so no copies are made.
+    private boolean placeAll(GridState st, Placement bulbs) {
+        for (int e = bulbs.next(0); e >= 0; e = bulbs.next(e + 1)) {
+            int i = segs.hCells[e];
+            if (st.hasBulb(i)) continue;
+            if (!st.canPlaceBulb(i)) return false;
+            st.placeBulb(i);
         }
-        for (int r = rOff; r < rOff + h; r++)
-            for (int c = cOff; c < cOff + w; c++)
-                if (tmp.getCellType(r,c)==CellType.NUMBERED && tmp.bulbsAround(r,c) > tmp.getNumber(r,c))
-                    return false;
         return true;
     }
 
     // -- A2: Step 6 – Compatibility check 
 
-    private boolean a2Compatible(Set<Point> merged, GridState base) {
-        GridState tmp = new GridState(base);
-        for (Point p : merged) {
-            if (tmp.hasBulb(p.x,p.y)) continue;
-            if (tmp.getCellType(p.x,p.y) != CellType.EMPTY) return false;
-            if (!tmp.canPlaceBulb(p.x,p.y)) return false;
-            tmp.placeBulb(p.x,p.y);
-        }
-        return tmp.isGloballyConsistent();
+    private boolean a2Compatible(Placement merged, GridState base) {
+        int m = base.mark();
+        // canPlaceBulb already rejects non-empty cells
+        boolean ok = placeAll(base, merged) && base.isGloballyConsistent();
+        base.undoTo(m);
+        return ok;
     }
 
     // -- A2: Step 7 – Greedy pruning & selection 
 
-    private List<Set<Point>> algo2Prune(List<Set<Point>> C, GridState base, int keep) {
-        C.sort((a, b) -> algo2Score(b, base) - algo2Score(a, base));
-        return new ArrayList<>(C.subList(0, Math.min(keep, C.size())));
+    // Each candidate is scored once (over the pool for long lists), then a
+    // bounded min-heap keeps the best `keep`.  Ties go to the earlier
+    // candidate, the order the old stable sort gave.
+    private static final int A2_PARALLEL_SCORES = 64, A2_SCORE_CHUNK = 16;
+
+    private List<Placement> algo2Prune(List<Placement> C, GridState base, int keep) {
+        int[] score = new int[C.size()];
+        RangeBody body = (st, lo, hi) -> { for (int k = lo; k < hi; k++) score[k] = algo2Score(C.get(k), st); };
+        if (C.size() >= A2_PARALLEL_SCORES && ForkJoinPool.getCommonPoolParallelism() > 1)
+            new StateRange(base, body, 0, C.size(), A2_SCORE_CHUNK).invoke();
+        else
+            body.run(base, 0, C.size());
+
+        PriorityQueue<Scored> heap = new PriorityQueue<>(keep + 1, BEST_FIRST.reversed());   // head: weakest kept
+        for (int k = 0; k < C.size(); k++) offerBounded(heap, new Scored(C.get(k), score[k], k), keep);
+        return bestFirst(heap);
     }
 
-    private Set<Point> algo2Best(List<Set<Point>> C, GridState base) {
-        return algo2Prune(C, base, 1).get(0);
+    private static void offerBounded(PriorityQueue<Scored> heap, Scored s, int keep) {
+        if (heap.size() < keep) heap.add(s);
+        else if (s.score > heap.peek().score) { heap.poll(); heap.add(s); }
     }
 
-    private int algo2Score(Set<Point> cand, GridState base) {
-        GridState tmp = new GridState(base);
-        for (Point p : cand)
-            if (!tmp.hasBulb(p.x,p.y) && tmp.getCellType(p.x,p.y)==CellType.EMPTY && tmp.canPlaceBulb(p.x,p.y))
-                tmp.placeBulb(p.x,p.y);
-        int score = 0;
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++) {
-                if (tmp.getCellType(r,c)==CellType.NUMBERED) {
-                    int nb = tmp.bulbsAround(r,c), req = tmp.getNumber(r,c);
-                    score += (nb == req) ? 10 : nb; // Priority 1
-                }
-                if (tmp.getCellType(r,c)==CellType.EMPTY && tmp.isLit(r,c)) score++; // Priority 2
-            }
-        return score;
+    private static List<Placement> bestFirst(Collection<Scored> kept) {
+        List<Scored> top = new ArrayList<>(kept);
+        top.sort(BEST_FIRST);
+        List<Placement> out = new ArrayList<>(top.size());
+        for (Scored s : top) out.add(s.cand);
+        return out;
     }
 
+    private Placement algo2Best(List<Placement> C, GridState base) {
+        return algo2Prune(C, base, 1).get(0);
+    }
 
-    private void updateIllumination() {
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.getCellType(r, c) == CellType.EMPTY) {
-                    board.setLit(r, c, board.hasBulb(r, c));
-                    board.setBlocked(r, c, false);
-                }
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.hasBulb(r, c)) propagateLightOnBoard(r, c);
-    }
-
-    private void propagateLightOnBoard(int r, int c) {
-        board.setLit(r, c, true);
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = r+d[0], nc = c+d[1];
-            while (board.isValidCell(nr, nc)) {
-                if (board.getCellType(nr,nc)==CellType.BLACK||board.getCellType(nr,nc)==CellType.NUMBERED) break;
-                board.setLit(nr,nc,true); board.setBlocked(nr,nc,true);
-                nr+=d[0]; nc+=d[1];
-            }
+    private int algo2Score(Placement cand, GridState base) {
+        int m = base.mark();
+        for (int e = cand.next(0); e >= 0; e = cand.next(e + 1)) {
+            int i = segs.hCells[e];
+            if (!base.hasBulb(i) && base.isEmptyCell(i) && base.canPlaceBulb(i))
+                base.placeBulb(i);
         }
+        int score = base.countLitEmpty(); // Priority 2
+        for (int i = 0; i < cells.length; i++)
+            if (isNumbered(cells[i])) {
+                int nb = base.bulbsAround(i), req = cells[i];
+                score += (nb == req) ? 10 : nb; // Priority 1
+            }
+        base.undoTo(m);
+        return score;
     }
 
+
     private boolean isVisibleToAnotherBulb(int r, int c) {
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr=r+d[0], nc=c+d[1];
-            while (board.isValidCell(nr,nc)) {
-                CellType t = board.getCellType(nr,nc);
-                if (t==CellType.BLACK||t==CellType.NUMBERED) break;
-                if (board.hasBulb(nr,nc)) return true;
-                nr+=d[0]; nc+=d[1];
-            }
-        }
-        return false;
+        return board.seesBulb(r, c);
     }
 
-    private int countPlacedBulbsAround(int r, int c) {
+    private int countPlacedBulbsAround(int i) {
         int cnt=0;
-        int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-        for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(board.isValidCell(nr,nc)&&board.hasBulb(nr,nc))cnt++;}
+        for(int k=4*i;k<4*i+4;k++){int j=nbrs[k];if(j>=0&&board.bulbAt(j))cnt++;}
         return cnt;
     }
-    private int countFreeNeighbours(int r, int c) {
-        int cnt=0; int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-        for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(board.isValidCell(nr,nc)&&board.getCellType(nr,nc)==CellType.EMPTY&&!board.hasBulb(nr,nc)&&!board.isBlocked(nr,nc))cnt++;}
-        return cnt;
-    }
-    private List<Point> getFreeNeighbours(int r, int c) {
-        List<Point> res=new ArrayList<>(); int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-        for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(board.isValidCell(nr,nc)&&board.getCellType(nr,nc)==CellType.EMPTY&&!board.hasBulb(nr,nc)&&!board.isBlocked(nr,nc))res.add(new Point(nr,nc));}
-        return res;
-    }
-    private boolean forbidFreeNeighbours(int r, int c) {
-        boolean ch=false; int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-        for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(board.isValidCell(nr,nc)&&board.getCellType(nr,nc)==CellType.EMPTY&&!board.hasBulb(nr,nc)&&!board.isBlocked(nr,nc)){board.setBlocked(nr,nc,true);ch=true;}}
-        return ch;
-    }
-    private List<Point> reachableSources(int r, int c) {
-        List<Point> srcs=new ArrayList<>();
-        if(board.getCellType(r,c)==CellType.EMPTY&&!board.hasBulb(r,c)&&!board.isBlocked(r,c)&&isValidBulbPlacement(r,c))srcs.add(new Point(r,c));
-        int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-        for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];while(board.isValidCell(nr,nc)){CellType t=board.getCellType(nr,nc);if(t==CellType.BLACK||t==CellType.NUMBERED)break;if(!board.hasBulb(nr,nc)&&!board.isBlocked(nr,nc)&&isValidBulbPlacement(nr,nc))srcs.add(new Point(nr,nc));nr+=d[0];nc+=d[1];}}
-        return srcs;
-    }
-
 
     private class GridState {
-        final int[][] grid;      // -1=black, 0-4=numbered, 5=empty
-        boolean[][] bulbs;
-        boolean[][] lit;
-        boolean[][] blocked;
+        final PuzzleTopology topo; // shared, immutable
+        long[] bulbs;            // bitboards, bit r*sz+c (see Bits)
+        long[] lit;
+        long[] blocked;
+        final long[] empty;      // static mask of EMPTY cells (shared)
+        final SegmentIndex segs; // shared
+        int[] hBulbs, vBulbs;    // bulbs per row / column segment
         final int sz;
+        // Undo trail: one entry (cell << 2 | kind) per bit that went 0 -> 1.
+        // Bits are only ever set between marks, so the trail never exceeds
+        // three entries per cell however deep the search goes.
+        private static final int T_BULB = 0, T_LIT = 1, T_BLOCKED = 2;
+        private int[] trail;
+        private int top;
 
         GridState(GameBoard b) {
             sz = b.getSize();
-            grid = new int[sz][sz]; bulbs = new boolean[sz][sz];
-            lit  = new boolean[sz][sz]; blocked = new boolean[sz][sz];
-            for (int i = 0; i < sz; i++)
-                for (int j = 0; j < sz; j++) {
-                    grid[i][j] = b.getNumberValue(i,j);
-                    bulbs[i][j] = b.hasBulb(i,j);
-                    lit[i][j]   = b.isLit(i,j);
-                    blocked[i][j] = b.isBlocked(i,j);
-                }
+            topo  = b.topology();
+            empty = topo.empty;
+            segs  = b.segments();
+            bulbs = b.bulbWords().clone();
+            lit   = b.litWords().clone();
+            blocked = b.blockedSnapshot();
+            hBulbs = b.hBulbCounts().clone();
+            vBulbs = b.vBulbCounts().clone();
+            trail = new int[3 * sz * sz];
         }
         GridState(GridState o) {
             sz = o.sz;
-            grid = new int[sz][sz]; bulbs = new boolean[sz][sz];
-            lit  = new boolean[sz][sz]; blocked = new boolean[sz][sz];
-            for (int i = 0; i < sz; i++) {
-                System.arraycopy(o.grid[i],    0, grid[i],    0, sz);
-                System.arraycopy(o.bulbs[i],   0, bulbs[i],   0, sz);
-                System.arraycopy(o.lit[i],     0, lit[i],     0, sz);
-                System.arraycopy(o.blocked[i], 0, blocked[i], 0, sz);
+            topo  = o.topo;
+            empty = o.empty;
+            segs  = o.segs;
+            bulbs = o.bulbs.clone();
+            lit   = o.lit.clone();
+            blocked = o.blocked.clone();
+            hBulbs = o.hBulbs.clone();
+            vBulbs = o.vBulbs.clone();
+            trail = new int[3 * sz * sz];
+        }
+
+        int mark() { return top; }
+
+        void undoTo(int m) {
+            while (top > m) {
+                int e = trail[--top], i = e >>> 2;
+                switch (e & 3) {
+                    case T_BULB: Bits.clear(bulbs, i); hBulbs[segs.hSeg[i]]--; vBulbs[segs.vSeg[i]]--; break;
+                    case T_LIT:  Bits.clear(lit, i); break;
+                    default:     Bits.clear(blocked, i);
+                }
             }
         }
 
-        CellType getCellType(int r, int c) {
-            if (grid[r][c]==-1) return CellType.BLACK;
-            if (grid[r][c]>=0&&grid[r][c]<=4) return CellType.NUMBERED;
-            return CellType.EMPTY;
+        private void setBit(long[] w, int i, int kind) {
+            if (Bits.get(w, i)) return;
+            Bits.set(w, i);
+            trail[top++] = i << 2 | kind;
         }
-        int getNumber(int r, int c)       { return grid[r][c]; }
+
+        // Row/column accessors, used by the separator heuristics.
+        CellType getCellType(int r, int c) { return topo.type(r*sz+c); }
+        int getNumber(int r, int c)       { return cells[r*sz+c]; }
         boolean isInBounds(int r, int c)  { return r>=0&&r<sz&&c>=0&&c<sz; }
-        boolean hasBulb(int r, int c)     { return bulbs[r][c]; }
-        boolean isLit(int r, int c)       { return lit[r][c]; }
-        boolean isBlocked(int r, int c)   { return blocked[r][c]; }
-        void setLit(int r, int c, boolean v)     { lit[r][c]=v; }
-        void setBlocked(int r, int c, boolean v) { blocked[r][c]=v; }
-
-        boolean canPlaceBulb(int r, int c) {
-            if (getCellType(r,c)!=CellType.EMPTY) return false;
-            if (bulbs[r][c]||blocked[r][c]) return false;
-            if (visibleToBulb(r,c)) return false;
-            if (violatesNumber(r,c)) return false;
+
+        // Everything else takes int-encoded cells i = r*sz+c; neighbours come from nbrs.
+        boolean isEmptyCell(int i)        { return Bits.get(empty, i); }
+        boolean hasBulb(int i)            { return Bits.get(bulbs, i); }
+        boolean isLit(int i)              { return Bits.get(lit, i); }
+        boolean isBlocked(int i)          { return Bits.get(blocked, i); }
+        void setLit(int i)                { setBit(lit, i, T_LIT); }
+        void setBlocked(int i)            { setBit(blocked, i, T_BLOCKED); }
+        int countLitEmpty()               { return Bits.countAnd(lit, empty); }
+
+        boolean canPlaceBulb(int i) {
+            if (!isEmptyCell(i)) return false;
+            if (hasBulb(i)||isBlocked(i)) return false;
+            if (visibleToBulb(i)) return false;
+            if (violatesNumber(i)) return false;
             return true;
         }
-        void placeBulb(int r, int c) {
-            bulbs[r][c]=true; lit[r][c]=true; propagateLight(r,c);
+        void placeBulb(int i) {
+            if (Bits.get(bulbs, i)) return;
+            setBit(bulbs, i, T_BULB); setBit(lit, i, T_LIT); hBulbs[segs.hSeg[i]]++; vBulbs[segs.vSeg[i]]++;
+            propagateLight(i);
         }
-        private void propagateLight(int r, int c) {
-            int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];while(isInBounds(nr,nc)){if(getCellType(nr,nc)!=CellType.EMPTY)break;lit[nr][nc]=true;blocked[nr][nc]=true;nr+=d[0];nc+=d[1];}}
+        private void propagateLight(int i) {
+            int h=segs.hSeg[i],v=segs.vSeg[i];
+            for(int k=segs.hStart[h];k<segs.hStart[h+1];k++){int j=segs.hCells[k];if(j!=i){setLit(j);setBlocked(j);}}
+            for(int k=segs.vStart[v];k<segs.vStart[v+1];k++){int j=segs.vCells[k];if(j!=i){setLit(j);setBlocked(j);}}
         }
-        boolean propagateRay(int r, int c, int dr, int dc) {
-            int nr=r+dr,nc=c+dc;
-            while(isInBounds(nr,nc)){if(getCellType(nr,nc)!=CellType.EMPTY)break;if(bulbs[nr][nc])return false;lit[nr][nc]=true;blocked[nr][nc]=true;nr+=dr;nc+=dc;}
+        /** Lights the ray from i in nbrs direction d; false if it meets a bulb. */
+        boolean propagateRay(int i, int d) {
+            for(int j=nbrs[4*i+d];j>=0&&isEmptyCell(j);j=nbrs[4*j+d]){if(Bits.get(bulbs,j))return false;setLit(j);setBlocked(j);}
             return true;
         }
-        private boolean visibleToBulb(int r, int c) {
-            int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];while(isInBounds(nr,nc)){if(getCellType(nr,nc)!=CellType.EMPTY)break;if(bulbs[nr][nc])return true;nr+=d[0];nc+=d[1];}}
-            return false;
+        private boolean visibleToBulb(int i) {
+            int own=Bits.get(bulbs,i)?1:0;
+            return hBulbs[segs.hSeg[i]]>own||vBulbs[segs.vSeg[i]]>own;
         }
-        private boolean violatesNumber(int r, int c) {
-            int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(isInBounds(nr,nc)&&getCellType(nr,nc)==CellType.NUMBERED){int req=grid[nr][nc];int cnt=0;for(int[] d2:dirs){int er=nr+d2[0],ec=nc+d2[1];if(isInBounds(er,ec)&&bulbs[er][ec])cnt++;}if(cnt+1>req)return true;}}
+        private boolean violatesNumber(int i) {
+            for(int k=4*i;k<4*i+4;k++){int j=nbrs[k];if(j>=0&&isNumbered(cells[j])&&bulbsAround(j)+1>cells[j])return true;}
             return false;
         }
-        boolean localViolation(int r, int c)  { return visibleToBulb(r,c)||violatesNumber(r,c); }
+        boolean localViolation(int i)  { return visibleToBulb(i)||violatesNumber(i); }
         boolean globalViolation() {
-            for(int r=0;r<sz;r++)for(int c=0;c<sz;c++){if(getCellType(r,c)==CellType.NUMBERED){int req=grid[r][c];int cnt=bulbsAround(r,c);if(cnt>req)return true;}if(getCellType(r,c)==CellType.EMPTY&&bulbs[r][c]&&visibleToBulb(r,c))return true;}
+            for(int i=0;i<cells.length;i++)if(isNumbered(cells[i])&&bulbsAround(i)>cells[i])return true;
+            // two bulbs see each other exactly when they share a segment
+            for(int n:hBulbs)if(n>1)return true;
+            for(int n:vBulbs)if(n>1)return true;
             return false;
         }
         boolean isGloballyConsistent() { return !globalViolation(); }
-        int bulbsAround(int r, int c) {
-            int cnt=0; int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(isInBounds(nr,nc)&&bulbs[nr][nc])cnt++;}
+        int bulbsAround(int i) {
+            int cnt=0;
+            for(int k=4*i;k<4*i+4;k++){int j=nbrs[k];if(j>=0&&hasBulb(j))cnt++;}
             return cnt;
         }
 
-        // Deduction engine (used by Algorithm 1 inside the D&C)
+        // Deduction engine (Algorithm 1's forced step and every D&C window).
+        // Worklist propagation: clues are queued when a neighbour changes
+        // (rules A-C), and an unlit cell is queued once its count of viable
+        // sources inside the window drops to one or zero (rule D).  Placing
+        // or forbidding a cell re-queues only the clues beside it and the
+        // cells on its clipped row/column runs, so after the O(window) setup
+        // the work follows the changes instead of rescanning every pass.
+        private int[] srcCount, clueQ, cellQ;
+        private long[] viable, queued;   // viable: window cells where canPlaceBulb still holds
+        private int wr0, wc0, wr1, wc1, clueTop, cellTop;
+
         boolean deduceLocal(int rOff, int cOff, int h, int w) {
-            boolean changed=true;
-            while(changed){changed=false;
-                for(int r=rOff;r<rOff+h;r++)for(int c=cOff;c<cOff+w;c++){
-                    if(getCellType(r,c)!=CellType.NUMBERED)continue;
-                    int k=grid[r][c],placed=bulbsAround(r,c),free=freeNeighbours(r,c);
+            if(srcCount==null){int n=sz*sz;srcCount=new int[n];clueQ=new int[n];cellQ=new int[n];viable=new long[Bits.words(n)];queued=new long[Bits.words(n)];}
+            wr0=rOff;wc0=cOff;wr1=rOff+h;wc1=cOff+w;clueTop=cellTop=0;
+            for(int r=wr0;r<wr1;r++)for(int c=wc0;c<wc1;c++){int i=r*sz+c;Bits.clear(queued,i);Bits.put(viable,i,canPlaceBulb(i));srcCount[i]=0;}
+            // sources of a cell: viable cells on its clipped row run plus column run, itself once
+            for(int r=wr0;r<wr1;r++)for(int c=wc0;c<wc1;){
+                if(!isEmptyCell(r*sz+c)){c++;continue;}
+                int start=c,cnt=0;
+                for(;c<wc1&&isEmptyCell(r*sz+c);c++)if(Bits.get(viable,r*sz+c))cnt++;
+                for(int k=start;k<c;k++)srcCount[r*sz+k]+=cnt;
+            }
+            for(int c=wc0;c<wc1;c++)for(int r=wr0;r<wr1;){
+                if(!isEmptyCell(r*sz+c)){r++;continue;}
+                int start=r,cnt=0;
+                for(;r<wr1&&isEmptyCell(r*sz+c);r++)if(Bits.get(viable,r*sz+c))cnt++;
+                for(int k=start;k<r;k++)srcCount[k*sz+c]+=cnt;
+            }
+            for(int r=wr1-1;r>=wr0;r--)for(int c=wc1-1;c>=wc0;c--){
+                int i=r*sz+c;
+                if(Bits.get(viable,i))srcCount[i]--;
+                if(isNumbered(cells[i]))enqueueClue(i);
+                else if(isEmptyCell(i)&&srcCount[i]<=1&&!isLit(i)&&!hasBulb(i))enqueueCell(i);
+            }
+            while(clueTop>0||cellTop>0){
+                if(clueTop>0){                                          // Rules A-C
+                    int i=clueQ[--clueTop];Bits.clear(queued,i);
+                    int k=cells[i],placed=bulbsAround(i),free=freeMask(i);
                     if(placed>k)return false;
-                    if(placed==k&&free>0){forbidNeighbours(r,c);changed=true;}
+                    if(placed==k&&free!=0)forbidNeighbours(i);
                     int needed=k-placed;
-                    if(needed>0&&needed==free){for(Point p:listFreeNeighbours(r,c)){if(!canPlaceBulb(p.x,p.y))return false;placeBulb(p.x,p.y);changed=true;}}
-                }
-                for(int r=rOff;r<rOff+h;r++)for(int c=cOff;c<cOff+w;c++){
-                    if(getCellType(r,c)!=CellType.EMPTY||lit[r][c]||bulbs[r][c])continue;
-                    List<Point> srcs=potentialSources(r,c,rOff,cOff,h,w);
-                    if(srcs.isEmpty())return false;
-                    if(srcs.size()==1){Point s=srcs.get(0);if(!bulbs[s.x][s.y]){if(!canPlaceBulb(s.x,s.y))return false;placeBulb(s.x,s.y);changed=true;}}
+                    if(needed>0&&needed==Integer.bitCount(free)){for(int d=0;d<4;d++){if((free>>d&1)==0)continue;int j=nbrs[4*i+d];if(!canPlaceBulb(j))return false;placeAndNotify(j);}}
+                } else {                                                // Rule D
+                    int i=cellQ[--cellTop];Bits.clear(queued,i);
+                    if(isLit(i)||hasBulb(i))continue;
+                    if(srcCount[i]==0)return false;
+                    int s=soleSource(i,i/sz,i%sz,wr0,wc0,wr1-wr0,wc1-wc0);
+                    if(s>=0&&!hasBulb(s)){if(!canPlaceBulb(s))return false;placeAndNotify(s);}
                 }
             }
             return true;
         }
-        private int freeNeighbours(int r, int c) {
-            int cnt=0; int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(isInBounds(nr,nc)&&getCellType(nr,nc)==CellType.EMPTY&&!bulbs[nr][nc]&&!blocked[nr][nc])cnt++;}
-            return cnt;
+        private void enqueueClue(int i) { if(!Bits.get(queued,i)){Bits.set(queued,i);clueQ[clueTop++]=i;} }
+        private void enqueueCell(int i) { if(!Bits.get(queued,i)){Bits.set(queued,i);cellQ[cellTop++]=i;} }
+        private boolean inWindow(int i) {
+            int r=i/sz,c=i%sz;
+            return r>=wr0&&r<wr1&&c>=wc0&&c<wc1;
+        }
+        private void placeAndNotify(int s) {
+            placeBulb(s);
+            touched(s);
+            int h=segs.hSeg[s],v=segs.vSeg[s];
+            for(int k=segs.hStart[h];k<segs.hStart[h+1];k++){int j=segs.hCells[k];if(j!=s)touched(j);}
+            for(int k=segs.vStart[v];k<segs.vStart[v+1];k++){int j=segs.vCells[k];if(j!=s)touched(j);}
+            // a clue beside s may now be full, which rules out its other neighbours
+            for(int q=topo.clueStart[s];q<topo.clueStart[s+1];q++){int c=topo.clueCells[q];for(int k=4*c;k<4*c+4;k++)if(nbrs[k]>=0)recheck(nbrs[k]);}
+        }
+        /** Cell j was lit, blocked or given a bulb. */
+        private void touched(int j) {
+            for(int q=topo.clueStart[j];q<topo.clueStart[j+1];q++){int c=topo.clueCells[q];if(inWindow(c))enqueueClue(c);}
+            recheck(j);
+        }
+        /** Drops j from the source counts of its runs once it stops being placeable. */
+        private void recheck(int j) {
+            if(!inWindow(j)||!Bits.get(viable,j)||canPlaceBulb(j))return;
+            Bits.clear(viable,j);
+            loseSource(j);
+            for(int d=0;d<4;d++)for(int t=nbrs[4*j+d];t>=0&&isEmptyCell(t)&&inWindow(t);t=nbrs[4*t+d])loseSource(t);
+        }
+        private void loseSource(int t) {
+            if(--srcCount[t]<=1&&!isLit(t)&&!hasBulb(t))enqueueCell(t);
+        }
+        private boolean isFree(int i) {
+            return i>=0&&isEmptyCell(i)&&!hasBulb(i)&&!isBlocked(i);
+        }
+        /** Bit d set when neighbour slot d of i is free. */
+        private int freeMask(int i) {
+            int m=0;
+            for(int d=0;d<4;d++)if(isFree(nbrs[4*i+d]))m|=1<<d;
+            return m;
+        }
+        private void forbidNeighbours(int i) {
+            for(int k=4*i;k<4*i+4;k++){int j=nbrs[k];if(isFree(j)){setBlocked(j);touched(j);}}
         }
-        private List<Point> listFreeNeighbours(int r, int c) {
-            List<Point> res=new ArrayList<>(); int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(isInBounds(nr,nc)&&getCellType(nr,nc)==CellType.EMPTY&&!bulbs[nr][nc]&&!blocked[nr][nc])res.add(new Point(nr,nc));}
-            return res;
-        }
-        private void forbidNeighbours(int r, int c) {
-            int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];if(isInBounds(nr,nc)&&getCellType(nr,nc)==CellType.EMPTY&&!bulbs[nr][nc]&&!blocked[nr][nc])blocked[nr][nc]=true;}
-        }
-        private List<Point> potentialSources(int r, int c, int rOff, int cOff, int h, int w) {
-            List<Point> srcs=new ArrayList<>();
-            if(canPlaceBulb(r,c))srcs.add(new Point(r,c));
-            int[][] dirs={{-1,0},{1,0},{0,-1},{0,1}};
-            for(int[] d:dirs){int nr=r+d[0],nc=c+d[1];while(isInBounds(nr,nc)&&nr>=rOff&&nr<rOff+h&&nc>=cOff&&nc<cOff+w){if(getCellType(nr,nc)!=CellType.EMPTY)break;if(canPlaceBulb(nr,nc))srcs.add(new Point(nr,nc));nr+=d[0];nc+=d[1];}}
-            return srcs;
+        /** Sole placeable source for cell i=(r,c) inside the window, NONE or MANY. */
+        private int soleSource(int i, int r, int c, int rOff, int cOff, int h, int w) {
+            int found=NONE;
+            if(canPlaceBulb(i))found=i;
+            for(int d=0;d<4;d++){int nr=r+DR[d],nc=c+DC[d];while(isInBounds(nr,nc)&&nr>=rOff&&nr<rOff+h&&nc>=cOff&&nc<cOff+w){int j=nr*sz+nc;if(!isEmptyCell(j))break;if(canPlaceBulb(j)){if(found!=NONE)return MANY;found=j;}nr+=DR[d];nc+=DC[d];}}
+            return found;
         }
     }
 }
@@ -0,0 +1,50 @@
+package lightUpGame;
+
+// Word helpers for the flat cell bitboards used by GameBoard and GridState.
+// Bit i of a board is the cell (i / size, i % size).
+final class Bits {
+
+    private Bits() {}
+
+    static int words(int bits)                 { return (bits + 63) >>> 6; }
+
+    static boolean get(long[] w, int i)        { return (w[i >>> 6] & (1L << i)) != 0; }
+    static void set(long[] w, int i)           { w[i >>> 6] |= 1L << i; }
+    static void clear(long[] w, int i)         { w[i >>> 6] &= ~(1L << i); }
+    static void put(long[] w, int i, boolean v) { if (v) set(w, i); else clear(w, i); }
+
+    /** Index of the first set bit at or after {@code from}, or -1. */
+    static int next(long[] w, int from) {
+        int wi = from >>> 6;
+        if (wi >= w.length) return -1;
+        long word = w[wi] & (-1L << from);
+        while (true) {
+            if (word != 0) return (wi << 6) + Long.numberOfTrailingZeros(word);
+            if (++wi == w.length) return -1;
+            word = w[wi];
+        }
+    }
+
+    static int count(long[] w) {
+        int n = 0;
+        for (long x : w) n += Long.bitCount(x);
+        return n;
+    }
+
+    static int countAnd(long[] a, long[] b) {
+        int n = 0;
+        for (int i = 0; i < a.length; i++) n += Long.bitCount(a[i] & b[i]);
+        return n;
+    }
+
+    /** True when every bit of {@code sub} is also set in {@code sup}. */
+    static boolean containsAll(long[] sup, long[] sub) {
+        for (int i = 0; i < sub.length; i++) if ((sub[i] & ~sup[i]) != 0) return false;
+        return true;
+    }
+
+    static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) if ((a[i] & b[i]) != 0) return true;
+        return false;
+    }
+}
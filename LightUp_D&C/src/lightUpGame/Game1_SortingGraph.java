@@ -83,7 +83,6 @@ public class Game1_SortingGraph extends JFrame {
         size  = board.getSize();
         canvas.setPreferredSize(new Dimension(size * CELL_SIZE, size * CELL_SIZE));
         pack();
-        updateIllumination();
         canvas.repaint();
 
         System.out.println("[G1] New game loaded – " + size + "x" + size);
@@ -112,7 +111,6 @@ public class Game1_SortingGraph extends JFrame {
         System.out.printf("[G1] Placing bulb at (%d,%d) score=%d%n",
                 best.x, best.y, priorityScore(best.x, best.y));
         board.placeBulb(best.x, best.y);
-        updateIllumination();
         canvas.repaint();
 
         if (isComplete()) {
@@ -165,14 +163,12 @@ public class Game1_SortingGraph extends JFrame {
         score -= reach;               // fewer reachable = higher priority
 
         // Bonus for adjacent numbered constraints
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = row + d[0], nc = col + d[1];
-            if (board.isValidCell(nr, nc) && board.getCellType(nr, nc) == CellType.NUMBERED) {
-                int need = board.getNumberValue(nr, nc)
-                         - countBulbsAround(nr, nc);
-                score += need * 10;  // high need = high priority
-            }
+        PuzzleTopology topo = board.topology();
+        int i = row * size + col;
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int j = topo.clueCells[k];
+            int need = topo.values[j] - countBulbsAround(j / size, j % size);
+            score += need * 10;  // high need = high priority
         }
 
         // BFS: count dark (unlit, non-bulb) cells reachable within 2 hops
@@ -185,18 +181,7 @@ public class Game1_SortingGraph extends JFrame {
 
     /** Count empty cells visible to (r,c) in 4 directions (line-of-sight). */
     private int lineOfSightCells(int r, int c) {
-        int cnt = 0;
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            while (board.isValidCell(nr, nc)) {
-                CellType t = board.getCellType(nr, nc);
-                if (t == CellType.BLACK || t == CellType.NUMBERED) break;
-                cnt++;
-                nr += d[0]; nc += d[1];
-            }
-        }
-        return cnt;
+        return board.segments().visibleCount(r * size + c);
     }
 
     /** BFS: count unlit, non-bulb empty cells within 'maxHops' hops. */
@@ -230,22 +215,13 @@ public class Game1_SortingGraph extends JFrame {
         if (board.getCellType(r, c) != CellType.EMPTY) return false;
         if (board.hasBulb(r, c) || board.isBlocked(r, c))  return false;
         // no visible bulb in line of sight
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            while (board.isValidCell(nr, nc)) {
-                CellType t = board.getCellType(nr, nc);
-                if (t == CellType.BLACK || t == CellType.NUMBERED) break;
-                if (board.hasBulb(nr, nc)) return false;
-                nr += d[0]; nc += d[1];
-            }
-        }
+        if (board.seesBulb(r, c)) return false;
         // won't exceed any adjacent number
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            if (board.isValidCell(nr, nc) && board.getCellType(nr, nc) == CellType.NUMBERED) {
-                if (countBulbsAround(nr, nc) + 1 > board.getNumberValue(nr, nc)) return false;
-            }
+        PuzzleTopology topo = board.topology();
+        int i = r * size + c;
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int j = topo.clueCells[k];
+            if (countBulbsAround(j / size, j % size) + 1 > topo.values[j]) return false;
         }
         return true;
     }
@@ -260,35 +236,6 @@ public class Game1_SortingGraph extends JFrame {
         return cnt;
     }
 
-    private void updateIllumination() {
-        // reset
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.getCellType(r, c) == CellType.EMPTY) {
-                    board.setLit(r, c, board.hasBulb(r, c));
-                    board.setBlocked(r, c, false);
-                }
-        // propagate
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.hasBulb(r, c)) propagate(r, c);
-    }
-
-    private void propagate(int r, int c) {
-        board.setLit(r, c, true);
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            while (board.isValidCell(nr, nc)) {
-                CellType t = board.getCellType(nr, nc);
-                if (t == CellType.BLACK || t == CellType.NUMBERED) break;
-                board.setLit(nr, nc, true);
-                board.setBlocked(nr, nc, true);
-                nr += d[0]; nc += d[1];
-            }
-        }
-    }
-
     private boolean isComplete() {
         for (int r = 0; r < size; r++)
             for (int c = 0; c < size; c++)
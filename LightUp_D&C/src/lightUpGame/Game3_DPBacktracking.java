@@ -14,10 +14,14 @@ import java.util.List;
 //  1. Collect all empty cells into an ordered list.
 //  2. Recursive backtracking: for each empty cell decide
 //     PLACE_BULB or SKIP.
-//  3. Prune immediately on any constraint violation.
-//  4. Memoisation (DP): encode visited partial states as a
-//     bitmask-based key (Long) and cache failed sub-problems
-//     in a HashSet to avoid re-exploring them.
+//  3. Prune immediately on any constraint violation, and as
+//     soon as a segment or clue behind the frontier is closed
+//     in a state it can no longer satisfy.
+//  4. Memoisation (DP): key each node on the frontier only –
+//     open segments, open clues and cells still waiting for
+//     light – so different prefixes that leave the same
+//     sub-problem share one entry in a fixed-size
+//     TranspositionTable.
 //  5. Once the full solution is found, animate it step-by-step
 //     via a Swing Timer (one bulb per 400 ms).
 // ============================================================
@@ -30,6 +34,9 @@ public class Game3_DPBacktracking extends JFrame {
     private int     size;
     private int[][] grid;           // -1=black, 0-4=numbered, 5=empty
     private boolean[][] solution;   // full solution bulb map from backtracking
+    private PuzzleTopology topo;    // shared static facts of the puzzle
+    private SegmentIndex segs;      // row/column segments of grid
+    private int[] hBulbs, vBulbs;   // bulbs per segment in the current partial state
 
     // ── animation state ──────────────────────────────────────
     private GameBoard   board;     // live board shown to user
@@ -38,8 +45,20 @@ public class Game3_DPBacktracking extends JFrame {
     private boolean     solved;
     private BoardPanel3 canvas;
 
-    // ── DP memo: set of "state keys" known to be unsolvable ──
-    private Set<String> failedStates;
+    // ── DP memo: frontier keys of states known to be unsolvable ──
+    private static final int MEMO_CAPACITY = 1 << 20;   // 12 MB of slots
+    private TranspositionTable failedStates;
+    // Cells are decided in list order; at depth idx the first idx are
+    // processed.  A segment or clue is open while it has cells on both
+    // sides of that frontier.
+    private int[] order, pos;           // emptyCells as cell indices, and each cell's depth
+    private int[] hLast, vLast;         // depth of the last cell of each segment
+    private int[] clueLast;             // depth of the last empty neighbour of each clue (by cell)
+    private int[] cluePlaced;           // bulbs beside each numbered cell
+    private int[] needH, needV;         // processed unlit cells only this segment can still light
+    private long[] zIdx, zLit, zNeed, zClue, zCell;   // Zobrist keys of the frontier features
+    private long frontKey;              // XOR of the features of every segment and clue not yet closed
+    private long[] runKey;              // per depth: zCell of the pending cells in the current row run
     private int[][]     sharedPuzzle;
 
     public Game3_DPBacktracking(int[][] puzzle) {
@@ -83,24 +102,30 @@ public class Game3_DPBacktracking extends JFrame {
 
         board = new GameBoard(puzzle);          // live display board
         solution = new boolean[size][size];
-        failedStates = new HashSet<>();
+        failedStates = new TranspositionTable(MEMO_CAPACITY);
+        topo   = board.topology();
+        segs   = topo.segs;
+        hBulbs = new int[segs.hCount];
+        vBulbs = new int[segs.vCount];
 
         canvas.setPreferredSize(new Dimension(size * CELL_SIZE, size * CELL_SIZE));
         pack();
         canvas.repaint();
 
-        System.out.println("[G3] Solving with DP+Backtracking…");
+        if (SolverLog.G3.isDebug()) SolverLog.G3.debug("Solving with DP+Backtracking…");
         long t0 = System.currentTimeMillis();
 
         // Collect ordered list of empty cells to try
         List<Point> emptyCells = new ArrayList<>();
         for (int r = 0; r < size; r++)
             for (int c = 0; c < size; c++)
-                if (grid[r][c] == 5) emptyCells.add(new Point(r, c));
+                if (topo.isEmpty(r * size + c)) emptyCells.add(new Point(r, c));
+        prepareFrontier(emptyCells);
 
         boolean[][] bulbs = new boolean[size][size];
         boolean found = backtrack(emptyCells, 0, bulbs);
-        System.out.printf("[G3] Solved=%b  in %d ms%n", found, System.currentTimeMillis() - t0);
+        if (SolverLog.G3.isInfo())
+            SolverLog.G3.info(String.format("Solved=%b  in %d ms", found, System.currentTimeMillis() - t0));
 
         if (!found) {
             JOptionPane.showMessageDialog(this, "No valid solution exists for this puzzle.",
@@ -122,15 +147,14 @@ public class Game3_DPBacktracking extends JFrame {
     private void revealNextBulb() {
         if (moveQueue.isEmpty()) {
             revealTimer.stop();
-            System.out.println("[G3] All bulbs revealed!");
+            if (SolverLog.G3.isInfo()) SolverLog.G3.info("All bulbs revealed!");
             JOptionPane.showMessageDialog(this, "Puzzle Solved! ✓", "Game 3", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
         Point p = moveQueue.remove(0);
         board.placeBulb(p.x, p.y);
-        updateIllumination();
         canvas.repaint();
-        System.out.printf("[G3] Revealed bulb at (%d,%d)%n", p.x, p.y);
+        if (SolverLog.G3.isDebug()) SolverLog.G3.debug("Revealed bulb at (" + p.x + "," + p.y + ")");
     }
 
     // ── DP + Backtracking solver ─────────────────────────────
@@ -138,113 +162,182 @@ public class Game3_DPBacktracking extends JFrame {
     /**
      * Recursive backtracking over emptyCells list.
      * At index idx, decide whether to place a bulb or not.
-     * Uses a bitmask DP cache (failedStates) to prune repeated failures.
+     * Uses a frontier-keyed DP cache (failedStates) to prune repeated failures.
      */
     private boolean backtrack(List<Point> cells, int idx, boolean[][] bulbs) {
-        // Pruning: check constraint violations so far
-        if (violates(bulbs)) return false;
-
         if (idx == cells.size()) {
             // Base case: check if all cells are properly lit and all numbers satisfied
             return checkComplete(bulbs);
         }
 
-        // DP memoisation key: partial bulb bitmask up to idx
-        String key = stateKey(bulbs, idx);
+        // DP memoisation key: everything the remaining cells can still see
+        long key = stateKey(idx);
         if (failedStates.contains(key)) return false;
 
         Point p = cells.get(idx);
+        int i = p.x * size + p.y;
 
         // Try placing a bulb here
         if (canPlace(p.x, p.y, bulbs)) {
-            bulbs[p.x][p.y] = true;
-            if (backtrack(cells, idx + 1, bulbs)) {
+            setBulb(bulbs, p.x, p.y, true);
+            boolean ok = close(idx, i, 1) && backtrack(cells, idx + 1, bulbs);
+            close(idx, i, -1);
+            if (ok) {
                 // copy solution
                 for (int r = 0; r < size; r++) System.arraycopy(bulbs[r], 0, solution[r], 0, size);
                 return true;
             }
-            bulbs[p.x][p.y] = false;
+            setBulb(bulbs, p.x, p.y, false);
         }
 
         // Try skipping this cell
-        if (backtrack(cells, idx + 1, bulbs)) {
+        boolean ok = close(idx, i, 1) && backtrack(cells, idx + 1, bulbs);
+        close(idx, i, -1);
+        if (ok) {
             for (int r = 0; r < size; r++) System.arraycopy(bulbs[r], 0, solution[r], 0, size);
             return true;
         }
 
         // Neither worked – memoize failure
-        failedStates.add(key);
+        failedStates.put(key, cells.size() - idx);
         return false;
     }
 
-    /** State key = partial bitmask of bulb positions up to cell index idx. */
-    private String stateKey(boolean[][] bulbs, int idx) {
-        // Use a compact string over the first idx empty cells' bulb bits
-        StringBuilder sb = new StringBuilder(idx + 4);
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (grid[r][c] == 5) sb.append(bulbs[r][c] ? '1' : '0');
-        sb.append('@').append(idx);
-        return sb.toString();
+    /**
+     * Cell i (at depth idx) has just been decided: settle the segments and
+     * clues it closes.  Unlit cells whose other segment is still open hand
+     * their need for light to it.  d = 1 applies the bookkeeping and reports
+     * whether the state is still satisfiable; d = -1, called in the same
+     * state, reverts it.
+     */
+    private boolean close(int idx, int i, int d) {
+        boolean ok = true;
+        int h = segs.hSeg[i], v = segs.vSeg[i];
+        if (vLast[v] == idx) {
+            if (vBulbs[v] == 0 && needV[v] > 0) ok = false;
+            if (hBulbs[h] == 0 && vBulbs[v] == 0) { if (hLast[h] == idx) ok = false; else addNeed(h, d); }
+        }
+        if (hLast[h] == idx && hBulbs[h] == 0) {
+            if (needH[h] > 0) ok = false;
+            for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) {
+                int vc = segs.vSeg[segs.hCells[k]];
+                if (vBulbs[vc] == 0 && vLast[vc] > idx) addNeed(segs.hCount + vc, d);
+            }
+        }
+        // what closes here leaves the key; closed items never change again,
+        // so the same XOR on the way back puts them in again
+        if (hLast[h] == idx) frontKey ^= segKey(h);
+        if (vLast[v] == idx) frontKey ^= segKey(segs.hCount + v);
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int q = topo.clueCells[k];
+            if (clueLast[q] != idx) continue;
+            if (cluePlaced[q] != topo.values[q]) ok = false;
+            frontKey ^= zClue[5 * q + cluePlaced[q]];
+        }
+        if (d > 0) {
+            long run = idx > 0 && segs.hSeg[order[idx - 1]] == h ? runKey[idx] : 0;
+            runKey[idx + 1] = vBulbs[v] == 0 && vLast[v] > idx ? run ^ zCell[i] : run;
+        }
+        return ok;
     }
 
-    private boolean canPlace(int r, int c, boolean[][] bulbs) {
-        if (grid[r][c] != 5) return false;
-        if (bulbs[r][c])     return false;
-        // no visible existing bulb in LoS
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            while (inBounds(nr, nc)) {
-                int v = grid[nr][nc];
-                if (v == -1 || (v >= 0 && v <= 4)) break; // wall
-                if (bulbs[nr][nc]) return false;           // sees another bulb
-                nr += d[0]; nc += d[1];
-            }
+    /** Feature key of segment s (h, or hCount + v): holds a bulb, owes light, or neither. */
+    private long segKey(int s) {
+        boolean hs = s < segs.hCount;
+        int lit = hs ? hBulbs[s] : vBulbs[s - segs.hCount], need = hs ? needH[s] : needV[s - segs.hCount];
+        return lit > 0 ? zLit[s] : need > 0 ? zNeed[s] : 0;
+    }
+
+    private void addNeed(int s, int d) {
+        frontKey ^= segKey(s);
+        if (s < segs.hCount) needH[s] += d; else needV[s - segs.hCount] += d;
+        frontKey ^= segKey(s);
+    }
+
+    /**
+     * Canonical key of the sub-problem at depth idx, from the frontier only:
+     * which open segments hold a bulb or still owe light, the bulb count of
+     * each open clue, and the cells of the open row run that either of
+     * their segments may still light.  frontKey also carries the segments
+     * and clues not reached yet, but those sit in their starting state, a
+     * constant for the depth like zIdx.  Both parts are kept up to date by
+     * setBulb and close, so this is O(1).
+     */
+    private long stateKey(int idx) {
+        long k = zIdx[idx] ^ frontKey;
+        if (idx > 0 && idx < order.length) {
+            int h = segs.hSeg[order[idx - 1]];
+            if (h == segs.hSeg[order[idx]] && hBulbs[h] == 0) k ^= runKey[idx];
         }
-        // won't violate adjacent numbers
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            if (inBounds(nr, nc) && grid[nr][nc] >= 0 && grid[nr][nc] <= 4) {
-                int cnt = 0;
-                for (int[] d2 : dirs) {
-                    int er = nr + d2[0], ec = nc + d2[1];
-                    if (inBounds(er, ec) && bulbs[er][ec]) cnt++;
-                }
-                if (cnt + 1 > grid[nr][nc]) return false;
-            }
+        return k;
+    }
+
+    /** Static frontier tables for the decision order in cells. */
+    private void prepareFrontier(List<Point> cells) {
+        int n = size * size, m = cells.size(), segCount = segs.hCount + segs.vCount;
+        order = new int[m];
+        pos = new int[n];
+        Arrays.fill(pos, -1);
+        for (int k = 0; k < m; k++) { Point p = cells.get(k); order[k] = p.x * size + p.y; pos[order[k]] = k; }
+
+        int[] last = new int[segCount + n];   // segments, then clues by cell
+        Arrays.fill(last, -1);
+        for (int k = 0; k < m; k++) {
+            int i = order[k];
+            last[segs.hSeg[i]] = last[segs.hCount + segs.vSeg[i]] = k;
+            for (int e = topo.clueStart[i]; e < topo.clueStart[i + 1]; e++) last[segCount + topo.clueCells[e]] = k;
         }
-        return true;
+        hLast = Arrays.copyOfRange(last, 0, segs.hCount);
+        vLast = Arrays.copyOfRange(last, segs.hCount, segCount);
+        clueLast = Arrays.copyOfRange(last, segCount, segCount + n);
+
+        cluePlaced = new int[n];
+        needH = new int[segs.hCount];
+        needV = new int[segs.vCount];
+
+        SplittableRandom rnd = new SplittableRandom(0x5EEDL);
+        zIdx  = randomKeys(rnd, m + 1);
+        zLit  = randomKeys(rnd, segCount);
+        zNeed = randomKeys(rnd, segCount);
+        zClue = randomKeys(rnd, 5 * n);
+        zCell = randomKeys(rnd, n);
+        runKey = new long[m + 1];
+        frontKey = 0;
+        for (int q = 0; q < n; q++) if (topo.isNumbered(q) && clueLast[q] >= 0) frontKey ^= zClue[5 * q];
     }
 
-    private boolean violates(boolean[][] bulbs) {
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int r = 0; r < size; r++) {
-            for (int c = 0; c < size; c++) {
-                // Over-lit numbered cell
-                if (grid[r][c] >= 0 && grid[r][c] <= 4) {
-                    int cnt = 0;
-                    for (int[] d : dirs) {
-                        int nr = r + d[0], nc = c + d[1];
-                        if (inBounds(nr, nc) && bulbs[nr][nc]) cnt++;
-                    }
-                    if (cnt > grid[r][c]) return true;
-                }
-                // Bulb sees another bulb
-                if (grid[r][c] == 5 && bulbs[r][c]) {
-                    for (int[] d : dirs) {
-                        int nr = r + d[0], nc = c + d[1];
-                        while (inBounds(nr, nc)) {
-                            int v = grid[nr][nc];
-                            if (v == -1 || (v >= 0 && v <= 4)) break;
-                            if (bulbs[nr][nc]) return true;
-                            nr += d[0]; nc += d[1];
-                        }
-                    }
-                }
-            }
+    private static long[] randomKeys(SplittableRandom rnd, int len) {
+        long[] z = new long[len];
+        for (int i = 0; i < len; i++) z[i] = rnd.nextLong();
+        return z;
+    }
+
+    private void setBulb(boolean[][] bulbs, int r, int c, boolean on) {
+        bulbs[r][c] = on;
+        int i = r * size + c, d = on ? 1 : -1, h = segs.hSeg[i], v = segs.hCount + segs.vSeg[i];
+        frontKey ^= segKey(h) ^ segKey(v);
+        hBulbs[h] += d;
+        vBulbs[v - segs.hCount] += d;
+        frontKey ^= segKey(h) ^ segKey(v);
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int q = topo.clueCells[k];
+            frontKey ^= zClue[5 * q + cluePlaced[q]] ^ zClue[5 * q + cluePlaced[q] + d];
+            cluePlaced[q] += d;
         }
-        return false;
+    }
+
+    private boolean canPlace(int r, int c, boolean[][] bulbs) {
+        if (!topo.isEmpty(r * size + c)) return false;
+        if (bulbs[r][c])     return false;
+        // no visible existing bulb in LoS: its row or column segment already holds one
+        int i = r * size + c;
+        if (hBulbs[segs.hSeg[i]] > 0 || vBulbs[segs.vSeg[i]] > 0) return false;
+        // won't violate adjacent numbers
+        for (int k = topo.clueStart[i]; k < topo.clueStart[i + 1]; k++) {
+            int j = topo.clueCells[k];
+            if (cluePlaced[j] + 1 > topo.values[j]) return false;
+        }
+        return true;
     }
 
     private boolean checkComplete(boolean[][] bulbs) {
@@ -269,55 +362,19 @@ public class Game3_DPBacktracking extends JFrame {
     }
 
     private boolean[][] computeLit(boolean[][] bulbs) {
+        // an empty cell is lit iff one of its two segments holds a bulb
         boolean[][] lit = new boolean[size][size];
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
         for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (bulbs[r][c]) {
-                    lit[r][c] = true;
-                    for (int[] d : dirs) {
-                        int nr = r + d[0], nc = c + d[1];
-                        while (inBounds(nr, nc)) {
-                            int v = grid[nr][nc];
-                            if (v == -1 || (v >= 0 && v <= 4)) break;
-                            lit[nr][nc] = true;
-                            nr += d[0]; nc += d[1];
-                        }
-                    }
-                }
+            for (int c = 0; c < size; c++) {
+                int i = r * size + c;
+                if (grid[r][c] == 5)
+                    lit[r][c] = hBulbs[segs.hSeg[i]] > 0 || vBulbs[segs.vSeg[i]] > 0;
+            }
         return lit;
     }
 
     private boolean inBounds(int r, int c) { return r >= 0 && r < size && c >= 0 && c < size; }
 
-    // ── illumination on live display board ───────────────────
-    private void updateIllumination() {
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.getCellType(r, c) == CellType.EMPTY) {
-                    board.setLit(r, c, board.hasBulb(r, c));
-                    board.setBlocked(r, c, false);
-                }
-        for (int r = 0; r < size; r++)
-            for (int c = 0; c < size; c++)
-                if (board.hasBulb(r, c)) propagate(r, c);
-    }
-
-    private void propagate(int r, int c) {
-        board.setLit(r, c, true);
-        int[][] dirs = {{-1,0},{1,0},{0,-1},{0,1}};
-        for (int[] d : dirs) {
-            int nr = r + d[0], nc = c + d[1];
-            while (board.isValidCell(nr, nc)) {
-                CellType t = board.getCellType(nr, nc);
-                if (t == CellType.BLACK || t == CellType.NUMBERED) break;
-                board.setLit(nr, nc, true);
-                board.setBlocked(nr, nc, true);
-                nr += d[0]; nc += d[1];
-            }
-        }
-    }
-
     // ── rendering ────────────────────────────────────────────
     private class BoardPanel3 extends JPanel {
         @Override
@@ -27,6 +27,10 @@ class GamePanel extends JPanel {
         });
     }
 
+    public void setAlgorithm(AlgorithmSolver.AlgoType algoType) {
+        solver.setAlgorithm(algoType);
+    }
+
     private void handlePlayerMove(int row, int col) {
         if (!board.isValidCell(row, col))                   return;
         if (board.getCellType(row, col) != CellType.EMPTY)  return;
@@ -74,11 +78,7 @@ class GamePanel extends JPanel {
     }
 
     private int countBulbs() {
-        int n = 0;
-        for (int r = 0; r < board.getSize(); r++)
-            for (int c = 0; c < board.getSize(); c++)
-                if (board.hasBulb(r, c)) n++;
-        return n;
+        return board.countBulbs();
     }
 
     @Override
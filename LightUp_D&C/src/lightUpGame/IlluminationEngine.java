@@ -0,0 +1,94 @@
+package lightUpGame;
+
+// Reference-counted illumination for one puzzle.
+// litBy[i] is the number of bulbs lighting empty cell i (a bulb lights its
+// own cell), so placing or removing a bulb only touches the cells of its two
+// segments instead of re-propagating the whole board.  The lit/blocked words
+// are kept in step with the counts:
+//   lit(i)     = litBy[i] > 0
+//   blocked(i) = litBy[i] - (bulb on i ? 1 : 0) > 0   (lit by another bulb)
+// Every place/remove is appended to an undo log; mark() / undoTo() rewind it.
+final class IlluminationEngine {
+    private final SegmentIndex segs;
+    private final long[] bulbs, lit, blocked;
+    private final int[] litBy;
+    private final int[] hBulbs, vBulbs;  // bulbs per row / column segment
+    private int[] log = new int[16];     // cell + 1 for a place, -(cell + 1) for a remove
+    private int logSize;
+
+    IlluminationEngine(SegmentIndex segs) {
+        this.segs = segs;
+        int n = segs.size * segs.size, words = Bits.words(n);
+        bulbs = new long[words];
+        lit = new long[words];
+        blocked = new long[words];
+        litBy = new int[n];
+        hBulbs = new int[segs.hCount];
+        vBulbs = new int[segs.vCount];
+    }
+
+    boolean hasBulb(int i)   { return Bits.get(bulbs, i); }
+    boolean isLit(int i)     { return Bits.get(lit, i); }
+    boolean isBlocked(int i) { return Bits.get(blocked, i); }
+    int litCount(int i)      { return litBy[i]; }
+
+    /** O(1): does empty cell i see a bulb other than one standing on it? */
+    boolean seesBulb(int i) {
+        int own = Bits.get(bulbs, i) ? 1 : 0;
+        return hBulbs[segs.hSeg[i]] > own || vBulbs[segs.vSeg[i]] > own;
+    }
+
+    /** Places a bulb on empty cell i; false if one is already there. */
+    boolean place(int i) {
+        if (Bits.get(bulbs, i)) return false;
+        apply(i, 1);
+        record(i + 1);
+        return true;
+    }
+
+    /** Removes the bulb on cell i; false if there is none. */
+    boolean remove(int i) {
+        if (!Bits.get(bulbs, i)) return false;
+        apply(i, -1);
+        record(-(i + 1));
+        return true;
+    }
+
+    /** Position in the undo log to hand back to {@link #undoTo}. */
+    int mark() { return logSize; }
+
+    /** Reverts every place/remove made since {@code mark}, newest first. */
+    void undoTo(int mark) {
+        while (logSize > mark) {
+            int e = log[--logSize];
+            if (e > 0) apply(e - 1, -1); else apply(-e - 1, 1);
+        }
+    }
+
+    private void record(int e) {
+        if (logSize == log.length) log = java.util.Arrays.copyOf(log, logSize * 2);
+        log[logSize++] = e;
+    }
+
+    private void apply(int i, int d) {
+        Bits.put(bulbs, i, d > 0);
+        int h = segs.hSeg[i], v = segs.vSeg[i];
+        hBulbs[h] += d; vBulbs[v] += d;
+        for (int k = segs.hStart[h]; k < segs.hStart[h + 1]; k++) bump(segs.hCells[k], d);
+        // the bulb's own cell is on both segments; count it once
+        for (int k = segs.vStart[v]; k < segs.vStart[v + 1]; k++) { int j = segs.vCells[k]; if (j != i) bump(j, d); }
+    }
+
+    private void bump(int j, int d) {
+        int n = litBy[j] += d;
+        Bits.put(lit, j, n > 0);
+        Bits.put(blocked, j, n - (Bits.get(bulbs, j) ? 1 : 0) > 0);
+    }
+
+    // Raw words for GameBoard / GridState snapshots; callers must not modify them.
+    long[] bulbWords()    { return bulbs; }
+    long[] litWords()     { return lit; }
+    long[] blockedWords() { return blocked; }
+    int[] hBulbCounts()   { return hBulbs; }
+    int[] vBulbCounts()   { return vBulbs; }
+}
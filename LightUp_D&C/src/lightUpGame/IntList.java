@@ -0,0 +1,25 @@
+package lightUpGame;
+
+import java.util.Arrays;
+
+// Growable list of primitive ints (cell indices) – no boxing on the solver paths.
+final class IntList {
+    private int[] a;
+    private int n;
+
+    IntList()             { this(8); }
+    IntList(int capacity) { a = new int[Math.max(capacity, 1)]; }
+
+    int size()            { return n; }
+    boolean isEmpty()     { return n == 0; }
+    int get(int k)        { return a[k]; }
+    void clear()          { n = 0; }
+    int removeLast()      { return a[--n]; }
+
+    void add(int v) {
+        if (n == a.length) a = Arrays.copyOf(a, n * 2);
+        a[n++] = v;
+    }
+
+    int[] toArray()       { return Arrays.copyOf(a, n); }
+}
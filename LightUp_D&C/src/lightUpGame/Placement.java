@@ -0,0 +1,52 @@
+package lightUpGame;
+
+import java.util.Arrays;
+
+// A set of bulb cells, as used for ALGO2 candidates: a bitset over the
+// puzzle's empty-cell ranks (SegmentIndex.rank), so a candidate costs one
+// bit per empty cell however many bulbs it holds.  Ranks follow row-major
+// order, so walking the bits visits cells in ascending r * size + c.
+// Immutable; the hash is computed once, which keeps deduplication cheap.
+final class Placement {
+    private final long[] bits;
+    private final int hash;
+
+    private Placement(long[] bits) {
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+    }
+
+    static Placement none(SegmentIndex segs) { return new Placement(new long[segs.rankWords]); }
+
+    /** The given empty cells (r * size + c). */
+    static Placement of(SegmentIndex segs, int[] cells) {
+        long[] w = new long[segs.rankWords];
+        for (int i : cells) Bits.set(w, segs.rank[i]);
+        return new Placement(w);
+    }
+
+    /** Rank of the first bulb at or after rank e, or -1. */
+    int next(int e) { return Bits.next(bits, e); }
+
+    int size() { return Bits.count(bits); }
+
+    Placement or(Placement o) {
+        long[] w = bits.clone();
+        for (int k = 0; k < w.length; k++) w[k] |= o.bits[k];
+        return new Placement(w);
+    }
+
+    /** True when a bulb of this placement and one of o share a segment. */
+    boolean sharesSegment(Placement o, SegmentIndex segs) {
+        for (int e = next(0); e >= 0; e = next(e + 1))
+            for (int k = 0, at = e * segs.rankWords; k < bits.length; k++)
+                if ((segs.sees[at + k] & o.bits[k]) != 0) return true;
+        return false;
+    }
+
+    @Override public int hashCode() { return hash; }
+
+    @Override public boolean equals(Object o) {
+        return o instanceof Placement && ((Placement) o).hash == hash && Arrays.equals(((Placement) o).bits, bits);
+    }
+}
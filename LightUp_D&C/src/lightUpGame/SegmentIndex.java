@@ -0,0 +1,81 @@
+package lightUpGame;
+
+// Row/column segment labelling of a puzzle, computed once per grid.
+// A segment is a maximal horizontal or vertical run of EMPTY cells; two
+// empty cells see each other exactly when they share a segment, and a bulb
+// lights precisely its own two segments.  Cells are indexed r * size + c,
+// non-empty cells carry segment -1.
+final class SegmentIndex {
+    final int size;
+    final int[] hSeg, vSeg;      // segment id of every cell
+    final int hCount, vCount;
+    // CSR cell lists: cells of h-segment s are hCells[hStart[s] .. hStart[s+1])
+    final int[] hStart, hCells;
+    final int[] vStart, vCells;
+    // Empty cells ranked 0 .. empties-1 in row-major order, the order they
+    // appear in hCells, so hCells[e] is the cell of rank e.  Bitsets over
+    // ranks (see Placement) hold one bit per empty cell only.
+    final int empties, rankWords;
+    final int[] rank;            // rank of every cell, -1 if not empty
+    // sees[e * rankWords .. (e + 1) * rankWords): the other empty cells on
+    // rank e's two segments, as a rank bitset
+    final long[] sees;
+
+    SegmentIndex(int[][] grid) {
+        size = grid.length;
+        int n = size * size;
+        hSeg = new int[n]; vSeg = new int[n];
+        int empties = 0;
+        for (int[] row : grid) for (int v : row) if (isEmpty(v)) empties++;
+        hCells = new int[empties]; vCells = new int[empties];
+        int[] hs = new int[empties + 1], vs = new int[empties + 1];
+
+        int seg = -1, k = 0;
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++) {
+                int i = r * size + c;
+                if (!isEmpty(grid[r][c])) { hSeg[i] = -1; continue; }
+                if (c == 0 || !isEmpty(grid[r][c - 1])) hs[++seg] = k;
+                hSeg[i] = seg; hCells[k++] = i;
+            }
+        hCount = seg + 1; hs[hCount] = k;
+        hStart = java.util.Arrays.copyOf(hs, hCount + 1);
+
+        seg = -1; k = 0;
+        for (int c = 0; c < size; c++)
+            for (int r = 0; r < size; r++) {
+                int i = r * size + c;
+                if (!isEmpty(grid[r][c])) { vSeg[i] = -1; continue; }
+                if (r == 0 || !isEmpty(grid[r - 1][c])) vs[++seg] = k;
+                vSeg[i] = seg; vCells[k++] = i;
+            }
+        vCount = seg + 1; vs[vCount] = k;
+        vStart = java.util.Arrays.copyOf(vs, vCount + 1);
+
+        this.empties = empties;
+        rankWords = Bits.words(empties);
+        rank = new int[n];
+        java.util.Arrays.fill(rank, -1);
+        for (int e = 0; e < empties; e++) rank[hCells[e]] = e;
+        sees = new long[empties * rankWords];
+        for (int e = 0; e < empties; e++) {
+            int i = hCells[e], h = hSeg[i], v = vSeg[i], at = e * rankWords;
+            for (int j = hStart[h]; j < hStart[h + 1]; j++) if (hCells[j] != i) setSees(at, rank[hCells[j]]);
+            for (int j = vStart[v]; j < vStart[v + 1]; j++) if (vCells[j] != i) setSees(at, rank[vCells[j]]);
+        }
+    }
+
+    private void setSees(int at, int e) { sees[at + (e >>> 6)] |= 1L << e; }
+
+    // same decoding as GameBoard.getCellType: -1=black, 0-4=numbered, else empty
+    static boolean isEmpty(int v) { return v != -1 && (v < 0 || v > 4); }
+
+    int hLen(int s) { return hStart[s + 1] - hStart[s]; }
+    int vLen(int s) { return vStart[s + 1] - vStart[s]; }
+
+    /** Cells lit by a bulb on empty cell i, the cell itself included. */
+    int lightCount(int i) { return hLen(hSeg[i]) + vLen(vSeg[i]) - 1; }
+
+    /** Other empty cells in line of sight of empty cell i. */
+    int visibleCount(int i) { return lightCount(i) - 1; }
+}
@@ -0,0 +1,111 @@
+package lightUpGame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Solver event log, off by default.  Switch it on with
+//   -Dlightup.log=TRACE|DEBUG|INFO|WARN      threshold level
+//   -Dlightup.log.sample.<CATEGORY>=N        keep only every Nth event of a category
+// Producers never block or touch the console: events are claimed into a
+// lock-free ring and a daemon thread drains it to System.out.  If the ring
+// is full the event is dropped and counted.  Call sites guard with the
+// isX() checks so a disabled log costs one constant comparison and no
+// message string is ever built:
+//   if (SolverLog.A1.isInfo()) SolverLog.A1.info("Forced: " + p);
+final class SolverLog {
+    static final int TRACE = 0, DEBUG = 1, INFO = 2, WARN = 3, OFF = 4;
+    private static final String[] LEVEL_NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "OFF"};
+
+    // Categories
+    static final SolverLog VALIDATE = new SolverLog("VALIDATE");  // per-cell placement rejections
+    static final SolverLog A1 = new SolverLog("A1");              // D&C algorithm 1
+    static final SolverLog A2 = new SolverLog("A2");              // D&C algorithm 2
+    static final SolverLog G3 = new SolverLog("G3");              // backtracking windows
+
+    private static final int THRESHOLD = parseLevel(System.getProperty("lightup.log", "OFF"));
+
+    private final String tag;
+    private final int every;
+    private final AtomicLong seen = new AtomicLong();
+
+    private SolverLog(String name) {
+        this.tag = "[" + name + "] ";
+        this.every = Math.max(1, Integer.getInteger("lightup.log.sample." + name, 1));
+    }
+
+    boolean isTrace() { return isOn(TRACE); }
+    boolean isDebug() { return isOn(DEBUG); }
+    boolean isInfo()  { return isOn(INFO); }
+    boolean isWarn()  { return isOn(WARN); }
+
+    /** Level check plus sampling; call once per event, before building the message. */
+    boolean isOn(int level) {
+        if (level < THRESHOLD) return false;
+        return every == 1 || seen.getAndIncrement() % every == 0;
+    }
+
+    void trace(String msg) { post(TRACE, msg); }
+    void debug(String msg) { post(DEBUG, msg); }
+    void info(String msg)  { post(INFO, msg); }
+    void warn(String msg)  { post(WARN, msg); }
+
+    private void post(int level, String msg) {
+        offer(level >= WARN ? tag + LEVEL_NAMES[level] + " " + msg : tag + msg);
+    }
+
+    private static int parseLevel(String s) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++)
+            if (LEVEL_NAMES[i].equalsIgnoreCase(s.trim())) return i;
+        return OFF;
+    }
+
+    // ── ring buffer ──────────────────────────────────────────
+    // Multi-producer, single-consumer.  A producer reserves sequence t by CAS
+    // on tail only while t - head < CAPACITY, so a slot is never reused before
+    // the writer has cleared it.  The writer waits on a reserved slot until
+    // its producer has filled it.
+    private static final int CAPACITY = 1 << 13, MASK = CAPACITY - 1;
+    private static final AtomicReferenceArray<String> RING = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong TAIL = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+    private static volatile long head;
+
+    private static void offer(String line) {
+        if (!STARTED.get() && STARTED.compareAndSet(false, true)) startWriter();
+        while (true) {
+            long t = TAIL.get();
+            if (t - head >= CAPACITY) { DROPPED.incrementAndGet(); return; }
+            if (TAIL.compareAndSet(t, t + 1)) { RING.set((int) t & MASK, line); return; }
+        }
+    }
+
+    private static void startWriter() {
+        Thread w = new Thread(() -> {
+            while (true) if (!drain()) LockSupport.parkNanos(1_000_000L);
+        }, "solver-log");
+        w.setDaemon(true);
+        w.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(SolverLog::drain, "solver-log-flush"));
+    }
+
+    /** Writes out everything published so far; false if there was nothing. */
+    private static synchronized boolean drain() {
+        StringBuilder sb = new StringBuilder();
+        long h = head;
+        String s;
+        while ((s = RING.get((int) h & MASK)) != null) {
+            RING.set((int) h & MASK, null);
+            sb.append(s).append('\n');
+            head = ++h;
+        }
+        long lost = DROPPED.getAndSet(0);
+        if (lost > 0) sb.append("[log] ").append(lost).append(" events dropped\n");
+        if (sb.length() == 0) return false;
+        System.out.print(sb);
+        System.out.flush();
+        return true;
+    }
+}
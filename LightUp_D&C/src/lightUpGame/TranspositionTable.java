@@ -0,0 +1,73 @@
+package lightUpGame;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-size, lock-free set of 64-bit state hashes (Zobrist keys) for the
+// backtracking solvers.  Open addressing over buckets of four slots; each
+// slot holds the full key, with a depth (the amount of search the entry
+// saves) alongside.  A full bucket evicts its shallowest entry, so memory
+// stays at capacity * 12 bytes however long the search runs.
+// Keys are written with CAS, so parallel workers can share one table.  A
+// lost race only drops an entry or misranks one for eviction, which costs
+// time; a hit is always an exact key match, so the only wrong answer left
+// is two states whose 64-bit keys collide.
+final class TranspositionTable {
+    private static final int BUCKET = 4;
+
+    private final AtomicLongArray keys;      // 0 marks an empty slot
+    private final AtomicIntegerArray depths;
+    private final int bucketMask;
+
+    /** capacity is rounded up to a power of two, at least one bucket. */
+    TranspositionTable(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(BUCKET, capacity - 1) << 1);
+        keys = new AtomicLongArray(cap);
+        depths = new AtomicIntegerArray(cap);
+        bucketMask = cap / BUCKET - 1;
+    }
+
+    boolean contains(long key) {
+        if (key == 0) return false;
+        int base = bucket(key);
+        for (int k = 0; k < BUCKET; k++) {
+            long e = keys.get(base + k);
+            if (e == 0) return false;
+            if (e == key) return true;
+        }
+        return false;
+    }
+
+    /** Records key; depth ranks entries for eviction (higher is kept longer). */
+    void put(long key, int depth) {
+        if (key == 0) return;   // would read as an empty slot
+        int base = bucket(key), victim = base, victimDepth = Integer.MAX_VALUE;
+        long victimKey = 0;
+        for (int k = 0; k < BUCKET; k++) {
+            int s = base + k;
+            long e = keys.get(s);
+            if (e == 0) {
+                if (keys.compareAndSet(s, 0, key)) { depths.set(s, depth); return; }
+                e = keys.get(s);
+            }
+            if (e == key) {
+                if (depths.get(s) < depth) depths.set(s, depth);
+                return;
+            }
+            int d = depths.get(s);
+            if (d < victimDepth) { victim = s; victimKey = e; victimDepth = d; }
+        }
+        if (keys.compareAndSet(victim, victimKey, key)) depths.set(victim, depth);
+    }
+
+    void clear() {
+        for (int i = 0; i < keys.length(); i++) { keys.set(i, 0); depths.set(i, 0); }
+    }
+
+    int capacity() { return keys.length(); }
+
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;   // remix so the bucket does not just follow the low key bits
+        return ((int) (h >>> 32) & bucketMask) * BUCKET;
+    }
+}